@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun.benchmarks;
+
+import com.griddynamics.banshun.StrictContextParentBean;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures resolving and analysis of locations in {@link StrictContextParentBean}, i.e. everything
+ * done before the child contexts are created. The modules are generated by
+ * {@link ModuleTreeGenerator}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AnalyzeDependenciesBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int modulesCount;
+
+    private File dir;
+    private GenericApplicationContext rootContext;
+
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("modules").toFile();
+
+        ModuleTreeGenerator generator = new ModuleTreeGenerator();
+        generator.setModulesCount(modulesCount);
+        generator.generate(dir);
+
+        rootContext = new GenericApplicationContext();
+        rootContext.refresh();
+    }
+
+    @TearDown
+    public void tearDown() {
+        rootContext.close();
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public List<String> analyze() throws Exception {
+        StrictContextParentBean parentBean = new StrictContextParentBean();
+        parentBean.setBeanName("root");
+        parentBean.setApplicationContext(rootContext);
+        parentBean.setConfigLocations(new String[]{ ModuleTreeGenerator.getLocationsPattern(dir) });
+        parentBean.afterPropertiesSet();
+
+        return parentBean.getResultConfigLocations();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun.benchmarks;
+
+import com.griddynamics.banshun.BeanReferenceInfo;
+import com.griddynamics.banshun.DependencySorter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DependencySorter#sort()} on synthetic acyclic graphs. Every location exports one
+ * service and imports a few services exported by other locations. The locations are passed to the
+ * sorter in a random order, so it has to reorder most of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DependencySorterBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int locationsCount;
+
+    @Param({"3"})
+    public int importsPerLocation;
+
+    private String[] locations;
+    private Map<String, List<BeanReferenceInfo>> imports;
+    private Map<String, BeanReferenceInfo> exports;
+
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+
+        List<String> names = new ArrayList<>(locationsCount);
+        imports = new HashMap<>();
+        exports = new HashMap<>();
+
+        for (int i = 0; i < locationsCount; i++) {
+            String location = "jar:file:/opt/app/lib/module-" + i + ".jar!/META-INF/module-" + i + ".xml";
+            String serviceName = "service" + i;
+            names.add(location);
+            exports.put(serviceName, new BeanReferenceInfo(serviceName, Runnable.class, location));
+
+            for (int j = 0; j < importsPerLocation && i > 0; j++) {
+                String imported = "service" + random.nextInt(i);
+                if (!imports.containsKey(imported)) {
+                    imports.put(imported, new ArrayList<BeanReferenceInfo>());
+                }
+                imports.get(imported).add(new BeanReferenceInfo(imported, Runnable.class, location));
+            }
+        }
+        Collections.shuffle(names, random);
+        locations = names.toArray(new String[names.size()]);
+    }
+
+    @Benchmark
+    public String[] sort() {
+        return new DependencySorter(locations, imports, exports).sort();
+    }
+}
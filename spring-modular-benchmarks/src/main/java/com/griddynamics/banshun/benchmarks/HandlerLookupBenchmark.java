@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun.benchmarks;
+
+import com.griddynamics.banshun.web.ScanChildrenHandlerMapping;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures lookup of a handler in {@link ScanChildrenHandlerMapping} with and without the index
+ * of the registered URL patterns. The handlers are the same as in {@link HandlerRegistrationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HandlerLookupBenchmark {
+
+    @Param({"1000", "10000"})
+    public int urlsCount;
+
+    @Param({"true", "false"})
+    public boolean usePatternIndex;
+
+    private LookupHandlerMapping handlerMapping;
+
+
+    @Setup
+    public void setUp() {
+        GenericApplicationContext childContext = new GenericApplicationContext();
+        childContext.registerBeanDefinition("handlerMapping", BeanDefinitionBuilder
+                .genericBeanDefinition(SimpleUrlHandlerMapping.class)
+                .addPropertyValue("urlMap", HandlerRegistrationBenchmark.generateUrlMap(urlsCount))
+                .getBeanDefinition());
+        childContext.refresh();
+
+        handlerMapping = new LookupHandlerMapping();
+        handlerMapping.setUsePatternIndex(usePatternIndex);
+        handlerMapping.createHandlerMappingsAndRegisterHandlers(childContext);
+
+        childContext.close();
+    }
+
+    @Benchmark
+    public Object lookupExactUrl() throws Exception {
+        return handlerMapping.lookup("/module-5/resource-5.html");
+    }
+
+    @Benchmark
+    public Object lookupPattern() throws Exception {
+        return handlerMapping.lookup("/module-10/items/42/detail-10.html");
+    }
+
+    @Benchmark
+    public Object lookupMissingUrl() throws Exception {
+        return handlerMapping.lookup("/module-10/missing.html");
+    }
+
+
+    static class LookupHandlerMapping extends ScanChildrenHandlerMapping {
+
+        Object lookup(String urlPath) throws Exception {
+            return lookupHandler(urlPath, null);
+        }
+    }
+}
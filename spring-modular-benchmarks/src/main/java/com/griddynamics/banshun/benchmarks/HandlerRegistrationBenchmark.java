@@ -0,0 +1,84 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun.benchmarks;
+
+import com.griddynamics.banshun.web.ScanChildrenHandlerMapping;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures registration of handlers collected from a child context by
+ * {@link ScanChildrenHandlerMapping}. The child contains a single {@link SimpleUrlHandlerMapping}
+ * with the given number of URLs, every tenth of them is a pattern.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HandlerRegistrationBenchmark {
+
+    static final int MODULES_COUNT = 100;
+
+    @Param({"1000", "10000"})
+    public int urlsCount;
+
+    private GenericApplicationContext childContext;
+
+
+    static Map<String, Object> generateUrlMap(int urlsCount) {
+        Map<String, Object> urlMap = new LinkedHashMap<>(urlsCount * 2);
+
+        for (int i = 0; i < urlsCount; i++) {
+            String prefix = "/module-" + (i % MODULES_COUNT);
+            String url = i % 10 == 0
+                    ? prefix + "/items/*/detail-" + i + ".html"
+                    : prefix + "/resource-" + i + ".html";
+            urlMap.put(url, new Object());
+        }
+        return urlMap;
+    }
+
+    @Setup
+    public void setUp() {
+        childContext = new GenericApplicationContext();
+        childContext.registerBeanDefinition("handlerMapping", BeanDefinitionBuilder
+                .genericBeanDefinition(SimpleUrlHandlerMapping.class)
+                .addPropertyValue("urlMap", generateUrlMap(urlsCount))
+                .getBeanDefinition());
+        childContext.refresh();
+    }
+
+    @TearDown
+    public void tearDown() {
+        childContext.close();
+    }
+
+    @Benchmark
+    public int registerHandlers() {
+        ScanChildrenHandlerMapping handlerMapping = new ScanChildrenHandlerMapping();
+        handlerMapping.createHandlerMappingsAndRegisterHandlers(childContext);
+
+        return handlerMapping.getHandlerMap().size();
+    }
+}
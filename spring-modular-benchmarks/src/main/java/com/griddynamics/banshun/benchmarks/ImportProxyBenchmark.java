@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun.benchmarks;
+
+import com.griddynamics.banshun.SingleResourceXmlChildContext;
+import com.griddynamics.banshun.benchmarks.fixtures.Counter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures per-call overhead of an imported service. The same bean is called directly, through
+ * the default Spring AOP import proxy and through the
+ * {@link com.griddynamics.banshun.DirectImportProxyFactoryBean direct import proxy}, both with the
+ * target obtained from the target source on each call and with a static target.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ImportProxyBenchmark {
+
+    private static final String CONFIG_PATH = "com/griddynamics/banshun/benchmarks/";
+
+    private ClassPathXmlApplicationContext rootContext;
+    private SingleResourceXmlChildContext childContext;
+
+    private Counter target;
+    private Counter aopProxy;
+    private Counter directProxy;
+    private Counter staticDirectProxy;
+
+
+    @Setup
+    public void setUp() {
+        rootContext = new ClassPathXmlApplicationContext(CONFIG_PATH + "import-proxy-root.xml");
+        childContext = new SingleResourceXmlChildContext(
+                new ClassPathResource(CONFIG_PATH + "import-proxy-child.xml"), rootContext);
+
+        target = childContext.getBean("counter", Counter.class);
+        aopProxy = childContext.getBean("aopCounter", Counter.class);
+        directProxy = childContext.getBean("directCounter", Counter.class);
+        staticDirectProxy = childContext.getBean("staticCounter", Counter.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        childContext.close();
+        rootContext.close();
+    }
+
+    @Benchmark
+    public long directCall() {
+        return target.increment();
+    }
+
+    @Benchmark
+    public long aopProxy() {
+        return aopProxy.increment();
+    }
+
+    @Benchmark
+    public long directProxy() {
+        return directProxy.increment();
+    }
+
+    @Benchmark
+    public long staticDirectProxy() {
+        return staticDirectProxy.increment();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun.benchmarks;
+
+import com.griddynamics.banshun.StrictContextParentBean;
+import com.griddynamics.banshun.benchmarks.fixtures.CompositeCounter;
+import com.griddynamics.banshun.benchmarks.fixtures.Counter;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Generates a synthetic tree of modules, i.e. XML contexts with exports and imports, and a root
+ * context with {@link StrictContextParentBean} that loads them.
+ *
+ * <p>Module <tt>i</tt> exports service <tt>service-i</tt> and imports a few services exported by
+ * modules with a lower number, so the graph is acyclic. The modules are grouped into
+ * subdirectories and their names are not zero-padded, so the resolved locations are not in the
+ * dependency order. The output depends only on the parameters, so the same tree can be generated
+ * again to reproduce results.</p>
+ *
+ * <p>It can be also run from the command line:
+ * <pre>java -cp benchmarks.jar com.griddynamics.banshun.benchmarks.ModuleTreeGenerator DIR [MODULES] [IMPORTS] [SEED]</pre>
+ * </p>
+ */
+public class ModuleTreeGenerator {
+
+    public static final String ROOT_CONFIG_NAME = "root-context.xml";
+
+    private static final String XML_HEADER =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<beans xmlns=\"http://www.springframework.org/schema/beans\"\n" +
+            "       xmlns:bs=\"http://www.griddynamics.com/schema/banshun\"\n" +
+            "       xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n" +
+            "       xsi:schemaLocation=\"\n" +
+            "       http://www.springframework.org/schema/beans http://www.springframework.org/schema/beans/spring-beans-3.0.xsd\n" +
+            "       http://www.griddynamics.com/schema/banshun http://www.griddynamics.com/schema/banshun/banshun-schema.xsd\">\n\n";
+
+    private int modulesCount = 100;
+    private int importsPerModule = 3;
+    private int modulesPerGroup = 50;
+    private long seed = 42;
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: ModuleTreeGenerator DIR [MODULES] [IMPORTS] [SEED]");
+            System.exit(1);
+        }
+        ModuleTreeGenerator generator = new ModuleTreeGenerator();
+        if (args.length > 1) {
+            generator.setModulesCount(Integer.parseInt(args[1]));
+        }
+        if (args.length > 2) {
+            generator.setImportsPerModule(Integer.parseInt(args[2]));
+        }
+        if (args.length > 3) {
+            generator.setSeed(Long.parseLong(args[3]));
+        }
+        File rootConfig = generator.generate(new File(args[0]));
+
+        System.out.println("Generated " + generator.modulesCount + " modules, root context: " + rootConfig);
+    }
+
+
+    public void setModulesCount(int modulesCount) {
+        this.modulesCount = modulesCount;
+    }
+
+    public void setImportsPerModule(int importsPerModule) {
+        this.importsPerModule = importsPerModule;
+    }
+
+    public void setModulesPerGroup(int modulesPerGroup) {
+        this.modulesPerGroup = modulesPerGroup;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return The location pattern that matches all modules generated into the given directory.
+     */
+    public static String getLocationsPattern(File dir) {
+        return "file:" + dir.getAbsolutePath() + "/**/module-*.xml";
+    }
+
+    /**
+     * Generates the modules and the root context into the given directory.
+     *
+     * @return The root context file.
+     */
+    public File generate(File dir) throws IOException {
+        Random random = new Random(seed);
+
+        for (int i = 0; i < modulesCount; i++) {
+            File groupDir = new File(dir, "group-" + (i / modulesPerGroup));
+            if (!groupDir.isDirectory() && !groupDir.mkdirs()) {
+                throw new IOException("Cannot create directory " + groupDir);
+            }
+            write(new File(groupDir, "module-" + i + ".xml"), generateModule(i, random));
+        }
+        File rootConfig = new File(dir, ROOT_CONFIG_NAME);
+        write(rootConfig, generateRoot(dir));
+
+        return rootConfig;
+    }
+
+
+    private String generateModule(int index, Random random) {
+        Set<Integer> imported = new TreeSet<>();
+        for (int j = 0; j < importsPerModule && index > 0; j++) {
+            imported.add(random.nextInt(index));
+        }
+        String counter = Counter.class.getName();
+
+        StringBuilder xml = new StringBuilder(XML_HEADER);
+        for (int i : imported) {
+            xml.append(String.format("    <bs:import id=\"service-%d\" interface=\"%s\" />\n", i, counter));
+        }
+        xml.append(String.format("\n    <bean id=\"counter\" class=\"%s\">\n", CompositeCounter.class.getName()))
+           .append("        <constructor-arg>\n")
+           .append("            <list>\n");
+        for (int i : imported) {
+            xml.append(String.format("                <ref bean=\"service-%d\" />\n", i));
+        }
+        xml.append("            </list>\n")
+           .append("        </constructor-arg>\n")
+           .append("    </bean>\n\n")
+           .append(String.format("    <bs:export name=\"service-%d\" ref=\"counter\" interface=\"%s\" />\n", index, counter))
+           .append("</beans>\n");
+
+        return xml.toString();
+    }
+
+    private String generateRoot(File dir) {
+        return XML_HEADER +
+            String.format("    <bean id=\"root\" class=\"%s\">\n", StrictContextParentBean.class.getName()) +
+            String.format("        <property name=\"configLocations\" value=\"%s\" />\n", getLocationsPattern(dir)) +
+            "    </bean>\n" +
+            "</beans>\n";
+    }
+
+    private static void write(File file, String content) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+            writer.write(content);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun.benchmarks;
+
+import com.griddynamics.banshun.ContextParentBean;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.support.FileSystemXmlApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the full startup and shutdown of a root context with N child contexts generated by
+ * {@link ModuleTreeGenerator}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+    @Param({"10", "100", "500"})
+    public int modulesCount;
+
+    private File dir;
+    private String rootConfig;
+
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("modules").toFile();
+
+        ModuleTreeGenerator generator = new ModuleTreeGenerator();
+        generator.setModulesCount(modulesCount);
+        rootConfig = generator.generate(dir).toURI().toString();
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public int startup() {
+        FileSystemXmlApplicationContext rootContext = new FileSystemXmlApplicationContext(rootConfig);
+        try {
+            return rootContext.getBean("root", ContextParentBean.class).getChildren().size();
+        } finally {
+            rootContext.close();
+        }
+    }
+}
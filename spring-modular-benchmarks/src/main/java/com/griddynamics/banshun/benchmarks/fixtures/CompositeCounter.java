@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun.benchmarks.fixtures;
+
+import java.util.List;
+
+/**
+ * Counter of a generated module, it depends on counters imported from other modules.
+ */
+public class CompositeCounter implements Counter {
+
+    private final List<Counter> delegates;
+    private long value;
+
+
+    public CompositeCounter(List<Counter> delegates) {
+        this.delegates = delegates;
+    }
+
+
+    public long increment() {
+        long sum = ++value;
+        for (Counter delegate : delegates) {
+            sum += delegate.increment();
+        }
+        return sum;
+    }
+}
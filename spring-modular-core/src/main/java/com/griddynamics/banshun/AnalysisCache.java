@@ -0,0 +1,286 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * On-disk cache of the dependency analysis made by {@link StrictContextParentBean}. It contains
+ * imports and exports of each location keyed by a fingerprint of its resource, and the sorted
+ * order of all the analyzed locations. The locations graph is not stored, it's cheaply rebuilt
+ * from the imports and exports.
+ *
+ * <p>An entry is valid only as long as its resource has the same fingerprint, so a changed resource
+ * invalidates just its own entry. The fingerprint covers only the resource of the location, not
+ * the resources it imports via <tt>&lt;import&gt;</tt>, so locations with imports are not cached
+ * at all and they're always parsed. The sorted order is reused only when all entries are valid and
+ * the same locations are analyzed. The locations are parsed with the environment of the root
+ * context, so the whole cache is valid only for the same active and default profiles.</p>
+ */
+class AnalysisCache {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalysisCache.class);
+
+    private static final int FORMAT_VERSION = 3;
+
+    private final String profiles;
+    private final Map<String, Entry> entries;
+    private final List<String> locations;
+    private final boolean prohibitCycles;
+    private final String[] sortedLocations;
+
+
+    /**
+     * @param profiles The profiles the locations have been parsed with, see {@link #profilesOf(Environment)}.
+     */
+    AnalysisCache(String profiles, Map<String, Entry> entries, List<String> locations, boolean prohibitCycles,
+                  String[] sortedLocations) {
+        this.profiles = profiles;
+        this.entries = entries;
+        this.locations = locations;
+        this.prohibitCycles = prohibitCycles;
+        this.sortedLocations = sortedLocations;
+    }
+
+
+    /**
+     * Computes a fingerprint of the resource from its size and last modification time. When the
+     * time is not available or <tt>contentHash</tt> is true, hash of its content is used instead.
+     */
+    static String fingerprint(Resource resource, boolean contentHash) throws IOException {
+        if (!contentHash) {
+            try {
+                long lastModified = resource.lastModified();
+                if (lastModified > 0) {
+                    return resource.contentLength() + "@" + lastModified;
+                }
+            } catch (IOException ex) {
+                log.trace("Cannot determine last modification time of {}", resource, ex);
+            }
+        }
+        return "md5:" + DigestUtils.md5DigestAsHex(FileCopyUtils.copyToByteArray(resource.getInputStream()));
+    }
+
+    /**
+     * @return The active and default profiles of the environment in a canonical form.
+     */
+    static String profilesOf(Environment environment) {
+        String[] active = environment.getActiveProfiles().clone();
+        String[] defaults = environment.getDefaultProfiles().clone();
+        Arrays.sort(active);
+        Arrays.sort(defaults);
+
+        return "active=" + StringUtils.arrayToCommaDelimitedString(active)
+                + ";default=" + StringUtils.arrayToCommaDelimitedString(defaults);
+    }
+
+    /**
+     * Reads the cache from the given file.
+     *
+     * @param profiles The current profiles, see {@link #profilesOf(Environment)}.
+     * @return The cache, or <tt>null</tt> if the file doesn't exist, cannot be read, or has been
+     *         made for other profiles.
+     */
+    static AnalysisCache load(File file, String profiles) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                log.info("Ignoring analysis cache {} in an unsupported format", file);
+                return null;
+            }
+            String cachedProfiles = in.readUTF();
+            if (!cachedProfiles.equals(profiles)) {
+                log.info("Ignoring analysis cache {} made for other profiles ({})", file, cachedProfiles);
+                return null;
+            }
+            int entriesCount = in.readInt();
+            Map<String, Entry> entries = new HashMap<>(entriesCount * 2);
+
+            for (int i = 0; i < entriesCount; i++) {
+                String location = in.readUTF();
+                String fingerprint = in.readUTF();
+                List<String[]> exports = readReferences(in);
+                List<String[]> imports = readReferences(in);
+
+                entries.put(location, new Entry(fingerprint, location, imports, exports));
+            }
+            List<String> locations = Arrays.asList(readStrings(in));
+            boolean prohibitCycles = in.readBoolean();
+            String[] sortedLocations = readStrings(in);
+
+            return new AnalysisCache(profiles, entries, locations, prohibitCycles, sortedLocations);
+
+        } catch (IOException ex) {
+            log.warn("Failed to read analysis cache from {}, ignoring it", file, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Writes this cache into the given file. A failure is only logged.
+     */
+    void save(File file) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            log.warn("Cannot create directory for analysis cache {}", file);
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(profiles);
+            out.writeInt(entries.size());
+
+            for (Entry entry : entries.values()) {
+                out.writeUTF(entry.location);
+                out.writeUTF(entry.fingerprint);
+                writeReferences(out, entry.exports);
+                writeReferences(out, entry.imports);
+            }
+            writeStrings(out, locations.toArray(new String[locations.size()]));
+            out.writeBoolean(prohibitCycles);
+            writeStrings(out, sortedLocations);
+
+            log.debug("Analysis of {} locations has been cached in {}", entries.size(), file);
+
+        } catch (IOException ex) {
+            log.warn("Failed to write analysis cache into {}", file, ex);
+        }
+    }
+
+    /**
+     * @return The cached entry for the location if its fingerprint matches, <tt>null</tt> otherwise.
+     */
+    Entry getEntry(String location, String fingerprint) {
+        Entry entry = entries.get(location);
+        return entry != null && entry.fingerprint.equals(fingerprint) ? entry : null;
+    }
+
+    /**
+     * @return Whether the cached sorted order has been made for the same locations and settings.
+     */
+    boolean isSortedFor(List<String> locations, boolean prohibitCycles) {
+        return this.prohibitCycles == prohibitCycles && this.locations.equals(locations);
+    }
+
+    String[] getSortedLocations() {
+        return sortedLocations.clone();
+    }
+
+
+    private static List<String[]> readReferences(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String[]> result = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            result.add(new String[]{ in.readUTF(), in.readUTF() });
+        }
+        return result;
+    }
+
+    private static void writeReferences(DataOutputStream out, List<String[]> references) throws IOException {
+        out.writeInt(references.size());
+
+        for (String[] reference : references) {
+            out.writeUTF(reference[0]);
+            out.writeUTF(reference[1]);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] result = new String[in.readInt()];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = in.readUTF();
+        }
+        return result;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+        out.writeInt(strings.length);
+
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+
+    /**
+     * Imports and exports of a single location. The references are kept as pairs of service name
+     * and interface class name, so the interfaces are loaded only when the entry is used.
+     */
+    static class Entry {
+
+        private final String fingerprint;
+        private final String location;
+        private final List<String[]> imports;
+        private final List<String[]> exports;
+
+
+        Entry(String fingerprint, String location, List<String[]> imports, List<String[]> exports) {
+            this.fingerprint = fingerprint;
+            this.location = location;
+            this.imports = imports;
+            this.exports = exports;
+        }
+
+        Entry(String fingerprint, String location) {
+            this(fingerprint, location, new ArrayList<String[]>(), new ArrayList<String[]>());
+        }
+
+
+        void addImport(BeanReferenceInfo reference) {
+            imports.add(toPair(reference));
+        }
+
+        void addExport(BeanReferenceInfo reference) {
+            exports.add(toPair(reference));
+        }
+
+        List<BeanReferenceInfo> getImports() throws ClassNotFoundException {
+            return toReferences(imports);
+        }
+
+        List<BeanReferenceInfo> getExports() throws ClassNotFoundException {
+            return toReferences(exports);
+        }
+
+
+        private String[] toPair(BeanReferenceInfo reference) {
+            return new String[]{ reference.getServiceName(), reference.getServiceInterface().getName() };
+        }
+
+        private List<BeanReferenceInfo> toReferences(List<String[]> pairs) throws ClassNotFoundException {
+            List<BeanReferenceInfo> result = new ArrayList<>(pairs.size());
+
+            for (String[] pair : pairs) {
+                Class<?> serviceInterface = ClassResolutionCache.getSharedInstance().forName(pair[1], AnalysisCache.class.getClassLoader());
+                result.add(new BeanReferenceInfo(pair[0], serviceInterface, location));
+            }
+            return result;
+        }
+    }
+}
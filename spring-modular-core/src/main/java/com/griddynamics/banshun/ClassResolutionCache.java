@@ -0,0 +1,199 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of class resolution results keyed by class loader and class name. Both found
+ * and missing classes are cached, so many modules that refer to the same interfaces, or to the
+ * same missing class, resolve it only once. The least recently used entries are evicted when
+ * the cache is full.
+ *
+ * <p>The {@link #getSharedInstance() shared instance} is used by the dependency analysis and the
+ * namespace parsers. Its users {@link #retain(ClassLoader) retain} the class loader they resolve
+ * classes with and release it when destroyed; entries of a class loader are evicted when its last
+ * user is released, so the class loader is not retained by the cache anymore, while the entries
+ * used by others are kept.</p>
+ */
+public class ClassResolutionCache {
+
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    private static final ClassResolutionCache SHARED = new ClassResolutionCache(DEFAULT_MAX_SIZE);
+
+    private static final Object MISSING = new Object();
+
+    private final Map<Key, Object> entries;
+    private final Map<ClassLoader, Integer> users = new IdentityHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+
+    public ClassResolutionCache(final int maxSize) {
+        this.entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public static ClassResolutionCache getSharedInstance() {
+        return SHARED;
+    }
+
+
+    /**
+     * Resolves (and initializes) the class with the given name, just like
+     * {@link Class#forName(String, boolean, ClassLoader)}.
+     *
+     * @param className The fully qualified name of the class.
+     * @param classLoader The class loader to load the class with.
+     * @return The class, or <tt>null</tt> if there's no such class.
+     */
+    public Class<?> findClass(String className, ClassLoader classLoader) {
+        Key key = new Key(classLoader, className);
+        Object cached;
+
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached != MISSING ? (Class<?>) cached : null;
+        }
+        misses.incrementAndGet();
+
+        Class<?> clazz;
+        try {
+            clazz = Class.forName(className, true, classLoader);
+        } catch (ClassNotFoundException ex) {
+            clazz = null;
+        }
+        synchronized (entries) {
+            entries.put(key, clazz != null ? clazz : MISSING);
+        }
+        return clazz;
+    }
+
+    /**
+     * Same as {@link #findClass(String, ClassLoader)}, but throws an exception if the class
+     * doesn't exist.
+     */
+    public Class<?> forName(String className, ClassLoader classLoader) throws ClassNotFoundException {
+        Class<?> clazz = findClass(className, classLoader);
+        if (clazz == null) {
+            throw new ClassNotFoundException(className);
+        }
+        return clazz;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Registers a user of the entries resolved with the given class loader.
+     */
+    public void retain(ClassLoader classLoader) {
+        synchronized (users) {
+            Integer count = users.get(classLoader);
+            users.put(classLoader, count != null ? count + 1 : 1);
+        }
+    }
+
+    /**
+     * Unregisters a user of the given class loader. When it was the last one, entries of the class
+     * loader are {@link #evict(ClassLoader) evicted}.
+     */
+    public void release(ClassLoader classLoader) {
+        synchronized (users) {
+            Integer count = users.get(classLoader);
+            if (count == null) {
+                return;
+            }
+            if (count > 1) {
+                users.put(classLoader, count - 1);
+                return;
+            }
+            users.remove(classLoader);
+        }
+        evict(classLoader);
+    }
+
+    /**
+     * Removes the entries resolved with the given class loader, so it's not retained anymore.
+     */
+    public void evict(ClassLoader classLoader) {
+        synchronized (entries) {
+            for (Iterator<Key> it = entries.keySet().iterator(); it.hasNext(); ) {
+                if (it.next().classLoader == classLoader) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the cached entries, so the class loaders are not retained anymore. The counters
+     * are not reset.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+
+    private static final class Key {
+
+        private final ClassLoader classLoader;
+        private final String className;
+
+        Key(ClassLoader classLoader, String className) {
+            this.classLoader = classLoader;
+            this.className = className;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return classLoader == other.classLoader && className.equals(other.className);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(classLoader) + className.hashCode();
+        }
+    }
+}
@@ -22,6 +22,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.framework.ProxyFactoryBean;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanNotOfRequiredTypeException;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
@@ -32,10 +35,26 @@ import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.support.AbstractApplicationContext;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.Assert;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.springframework.beans.factory.config.BeanDefinition.ROLE_INFRASTRUCTURE;
 
@@ -43,6 +62,13 @@ public class ContextParentBean implements Registry,
         InitializingBean, DisposableBean, ApplicationContextAware, ApplicationListener<ApplicationEvent> {
 
     private static final Logger log = LoggerFactory.getLogger(ContextParentBean.class);
+
+    /**
+     * The class loader that the analysis and the namespace parsers resolve classes with, i.e. the
+     * one of this library. Its entries in the shared {@link ClassResolutionCache} are evicted when
+     * the last bean that uses it is destroyed.
+     */
+    private static final ClassLoader RESOLUTION_CLASS_LOADER = ContextParentBean.class.getClassLoader();
     private Map<String, Exception> nestedContextsExceptions = new LinkedHashMap<>();
 
     protected ApplicationContext context;
@@ -56,6 +82,51 @@ public class ContextParentBean implements Registry,
 
     private boolean strictErrorHandling = false;
     private String childContextPrototype = null;
+    private Executor childContextExecutor = null;
+    private Executor childContextShutdownExecutor = null;
+    private long childContextShutdownTimeout = 0;
+    private long importTimeout = 0;
+    private Executor warmupExecutor = null;
+    private boolean directImportProxies = false;
+    private boolean staticImportTargets = false;
+    private boolean logStartupCriticalPath = false;
+    private String startupMetricsObjectName = null;
+
+    private final StartupMetrics startupMetrics = new StartupMetrics();
+    private ObjectName registeredMetricsName;
+
+    /**
+     * Whether this bean retains its entries in the shared {@link ClassResolutionCache}, see
+     * {@link #RESOLUTION_CLASS_LOADER}.
+     */
+    private final AtomicBoolean classResolutionRetained = new AtomicBoolean();
+
+    /**
+     * Registry of the exported services and import proxies keyed by service name. Only the first
+     * registration of a service is propagated into the root bean factory, so export and lookup
+     * don't contend on it and repeated lookups don't touch it at all.
+     */
+    private final ConcurrentMap<String, ExportTargetSource> exportedServices = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ImportProxy> importProxies = new ConcurrentHashMap<>();
+
+    /**
+     * Latches of the services that someone waits for, completed and removed when the service is
+     * exported.
+     */
+    private final ConcurrentMap<String, ExportLatch> pendingExports = new ConcurrentHashMap<>();
+
+    /**
+     * Resources of the resolved locations keyed by their URI, so each pattern is resolved only once
+     * and the child contexts are created from the same resources.
+     */
+    private final Map<String, Resource> resolvedResources = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> resolvedPatterns = new HashMap<>();
+
+    /**
+     * Child contexts created from each location.
+     */
+    private final Map<String, List<ConfigurableApplicationContext>> locationChildren = new ConcurrentHashMap<>();
+    private final Object reloadMonitor = new Object();
 
     public static final String TARGET_SOURCE_SUFFIX = "_targetSource";
     public static final String BEAN_DEF_SUFFIX = "_beanDef";
@@ -76,6 +147,138 @@ public class ContextParentBean implements Registry,
         this.childContextPrototype = childContextPrototype;
     }
 
+    /**
+     * Specifies an executor that will be used to initialize the nested children contexts
+     * concurrently. A child context is refreshed only after all the contexts it imports services
+     * from are finished (see {@link #getLocationDependencies(String)}), so independent contexts
+     * are refreshed at the same time. The list of children is still in the order of
+     * {@link #getResultConfigLocations() resultConfigLocations}.
+     *
+     * <p>Contexts that block on I/O during refresh can use {@link VirtualThreadTaskExecutor}, so
+     * they don't occupy a thread of a bounded pool. It uses virtual threads only on Java 24 and
+     * newer, where they don't pin their carrier thread inside the <tt>synchronized</tt> refresh.</p>
+     *
+     * @default null, i.e. children are initialized one by one in the thread that has refreshed
+     *          the root context.
+     */
+    public void setChildContextExecutor(Executor childContextExecutor) {
+        this.childContextExecutor = childContextExecutor;
+    }
+
+    /**
+     * Specifies an executor that will be used to close the nested children contexts concurrently
+     * on shutdown. A location is closed only after all the locations that import services from it
+     * (see {@link #getLocationDependencies(String)}) are closed, so independent contexts are
+     * closed at the same time.
+     *
+     * @default null, i.e. children are closed one by one in the reverse order of initialization.
+     */
+    public void setChildContextShutdownExecutor(Executor childContextShutdownExecutor) {
+        this.childContextShutdownExecutor = childContextShutdownExecutor;
+    }
+
+    /**
+     * Specifies how long (in milliseconds) to wait for a single child context to close. When the
+     * timeout elapses, the context is {@link #reportBlockingChildContexts(List) reported} as
+     * blocking the shutdown and its close continues in the background, while the contexts it
+     * depends on are closed.
+     *
+     * @default 0, i.e. wait until the context is closed.
+     */
+    public void setChildContextShutdownTimeout(long childContextShutdownTimeout) {
+        Assert.isTrue(childContextShutdownTimeout >= 0, "childContextShutdownTimeout must not be negative");
+        this.childContextShutdownTimeout = childContextShutdownTimeout;
+    }
+
+    /**
+     * Specifies an executor that will be used to warm up the exported services when all the
+     * nested children contexts are initialized, i.e. to obtain the exported beans and resolve the
+     * import proxies of them, so the first call doesn't pay for it. Services of a location are
+     * warmed up after the services of the locations it imports from, independent locations are
+     * warmed up concurrently. The time is recorded in the {@link #getStartupMetrics() startup
+     * metrics}.
+     *
+     * @default null, i.e. services are resolved on the first call.
+     */
+    public void setWarmupExecutor(Executor warmupExecutor) {
+        this.warmupExecutor = warmupExecutor;
+    }
+
+    /**
+     * Specifies how long (in milliseconds) a call through an import proxy waits for the service
+     * to be exported, when it's not exported yet, e.g. because the exporting context is still
+     * being initialized concurrently. Note that when the children are initialized one by one,
+     * a context that calls a service of a following context during its initialization waits
+     * for the whole timeout and then fails.
+     *
+     * @default 0, i.e. the call fails immediately.
+     */
+    public void setImportTimeout(long importTimeout) {
+        Assert.isTrue(importTimeout >= 0, "importTimeout must not be negative");
+        this.importTimeout = importTimeout;
+    }
+
+    /**
+     * Specifies whether imports of interfaces should use {@link DirectImportProxyFactoryBean}
+     * instead of Spring AOP proxies. The generated proxy class invokes methods directly on the
+     * resolved target, without reflection and interceptors, so it's considerably cheaper on hot
+     * paths. The target is still obtained from the target source on each call, so the proxy
+     * doesn't pin the first resolved instance, unless {@link #setStaticImportTargets(boolean)
+     * staticImportTargets} is enabled.
+     *
+     * @default false
+     */
+    public void setDirectImportProxies(boolean directImportProxies) {
+        this.directImportProxies = directImportProxies;
+    }
+
+    /**
+     * Specifies whether the {@link #setDirectImportProxies(boolean) direct import proxies} should
+     * keep the target once the service is resolved and invoke it directly, without asking the
+     * target source on each call (see {@link DirectImportProxyFactoryBean#setStaticTarget(boolean)}).
+     * The proxies would not follow a reloaded context, so {@link #reload(String)} is refused.
+     *
+     * @default false
+     */
+    public void setStaticImportTargets(boolean staticImportTargets) {
+        this.staticImportTargets = staticImportTargets;
+    }
+
+    /**
+     * Specifies whether the startup report and the critical path of the children initialization
+     * should be logged (on INFO level) when all the children are initialized.
+     *
+     * @default false
+     */
+    public void setLogStartupCriticalPath(boolean logStartupCriticalPath) {
+        this.logStartupCriticalPath = logStartupCriticalPath;
+    }
+
+    /**
+     * Specifies a JMX object name under which the {@link #getStartupMetrics() startup metrics}
+     * will be registered in the platform MBean server.
+     *
+     * @default null, i.e. not registered.
+     */
+    public void setStartupMetricsObjectName(String startupMetricsObjectName) {
+        this.startupMetricsObjectName = startupMetricsObjectName;
+    }
+
+    /**
+     * @return Timings of the startup phases and of each child context.
+     */
+    public StartupMetrics getStartupMetrics() {
+        return startupMetrics;
+    }
+
+    /**
+     * @return Human readable table of timings per location, the slowest first.
+     * @see StartupMetrics#getStartupReport()
+     */
+    public String getStartupReport() {
+        return startupMetrics.getStartupReport();
+    }
+
     /**
      * @return List of the instantiated nested contexts.
      */
@@ -125,33 +328,140 @@ public class ContextParentBean implements Registry,
         log.debug("Exporting bean '{}' with interface '{}' and name '{}'",
                 exportRef.getBeanName(), exportRef.getServiceInterface().getSimpleName(), exportRef.getServiceName());
 
-        String singletonBeanName = exportRef.getServiceName() + TARGET_SOURCE_SUFFIX;
+        String serviceName = exportRef.getServiceName();
+        ExportTargetSource created = new ExportTargetSource(exportRef);
+        ExportTargetSource existing = exportedServices.putIfAbsent(serviceName, created);
+
+        if (existing == null) {
+            String singletonBeanName = serviceName + TARGET_SOURCE_SUFFIX;
 
-        if (!context.containsBean(singletonBeanName)) {
-            ExportTargetSource exportTargetSource = new ExportTargetSource(exportRef);
+            if (context.containsBean(singletonBeanName)) {
+                // registered by someone else, lookups will find it in the root context
+                exportedServices.remove(serviceName, created);
+            } else {
+                beanFactory.registerSingleton(singletonBeanName, created);
 
-            beanFactory.registerSingleton(singletonBeanName, exportTargetSource);
+                ExportLatch pending = pendingExports.remove(serviceName);
+                if (pending != null) {
+                    pending.complete(created);
+                }
+            }
+        } else if (!existing.isBound()) {
+            log.debug("Rebinding service '{}' to the reloaded context", serviceName);
+            existing.rebind(exportRef);
+
+        } else {
+            log.warn("Service '{}' is already exported by bean '{}', ignoring export of bean '{}'",
+                    serviceName, existing.getBeanName(), exportRef.getBeanName());
         }
 
         return null;
     }
 
     public <T> T lookup(String serviceName, Class<T> serviceInterface) {
-        log.debug("Looking up service '{}' with interface '{}'", serviceName, serviceInterface.getSimpleName());
+        ImportProxy importProxy = importProxies.get(serviceName);
 
-        String importProxyName = serviceName + BEAN_DEF_SUFFIX;
+        if (importProxy == null) {
+            ImportProxy created = new ImportProxy(serviceName, serviceInterface);
+            importProxy = importProxies.putIfAbsent(serviceName, created);
 
-        if (!context.containsBean(importProxyName)) {
-            RootBeanDefinition proxyBeanDef = new RootBeanDefinition(ProxyFactoryBean.class);
+            if (importProxy == null) {
+                importProxy = created;
+            }
+        }
 
-            proxyBeanDef.setRole(ROLE_INFRASTRUCTURE);
-            proxyBeanDef.getPropertyValues().add("targetSource",
-                    new LookupTargetSource(serviceName, serviceInterface, serviceName + TARGET_SOURCE_SUFFIX, context));
+        return importProxy.getProxy(serviceInterface);
+    }
 
-            ((BeanDefinitionRegistry) beanFactory).registerBeanDefinition(importProxyName, proxyBeanDef);
+    /**
+     * Imports the service asynchronously. The returned future is done when the service is
+     * exported; its result is the same proxy as returned by {@link #lookup(String, Class)}.
+     * Waiting for the future activates a lazy location that exports the service, just like
+     * a call through the proxy does.
+     */
+    public <T> Future<T> lookupAsync(String serviceName, Class<T> serviceInterface) {
+        return new ImportFuture<>(serviceName, serviceInterface);
+    }
+
+    /**
+     * Returns target source of the exported service. If the service hasn't been exported yet, it
+     * tries to {@link #activateExporter(String) activate} the location that exports it.
+     *
+     * @param serviceName The name of the exported service.
+     * @return The target source, or <tt>null</tt> if no such service is exported.
+     */
+    protected ExportTargetSource findExportTargetSource(String serviceName) {
+        ExportTargetSource exportTargetSource = exportedServices.get(serviceName);
+
+        if (exportTargetSource == null) {
+            // look again even if not activated now, the activation may have just finished
+            activateExporter(serviceName);
+            exportTargetSource = exportedServices.get(serviceName);
         }
+        return exportTargetSource;
+    }
 
-        return context.getBean(importProxyName, serviceInterface);
+    /**
+     * Waits at most the {@link #setImportTimeout(long) import timeout} for the service to be
+     * exported.
+     *
+     * @param serviceName The name of the exported service.
+     * @return The target source, or <tt>null</tt> if the service hasn't been exported in time.
+     * @throws BeanCreationException if the current thread has been interrupted while waiting.
+     */
+    protected ExportTargetSource awaitExportTargetSource(String serviceName) {
+        if (importTimeout == 0) {
+            return null;
+        }
+        ExportLatch latch = awaitExport(serviceName);
+        try {
+            return latch.await(importTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BeanCreationException(serviceName, "Interrupted while waiting for export of the service", ex);
+        } finally {
+            leaveExport(serviceName, latch);
+        }
+    }
+
+    /**
+     * Reloads child contexts of the given location, i.e. closes them and creates them again from
+     * their resources. Services exported by the location are rebound to the new beans, so
+     * existing import proxies don't have to be recreated. Callers of these services are blocked
+     * until the new context exports them again.
+     *
+     * <p>When the reloaded location exports a different set of services or with different
+     * interfaces than before, the locations that depend on it (see
+     * {@link #getDependentLocations(String)}) are reloaded as well.</p>
+     *
+     * @param location The resolved location to reload.
+     * @throws IllegalArgumentException if the location hasn't been initialized.
+     * @throws IllegalStateException if {@link #setStaticImportTargets(boolean) staticImportTargets}
+     *         is enabled.
+     */
+    public void reload(String location) {
+        Assert.state(!staticImportTargets, "Locations cannot be reloaded when import proxies have static targets");
+
+        synchronized (reloadMonitor) {
+            Assert.isTrue(locationChildren.containsKey(location), "Location has not been initialized: " + location);
+
+            Map<String, Class<?>> oldContract = getExportedContract(location);
+            reloadLocation(location);
+            Map<String, Class<?>> newContract = getExportedContract(location);
+
+            if (newContract.equals(oldContract)) {
+                return;
+            }
+            removeChangedImportProxies(oldContract, newContract);
+
+            Collection<String> dependentLocations = getDependentLocations(location);
+            for (String loc : resultConfigLocations) {
+                if (dependentLocations.contains(loc) && locationChildren.containsKey(loc)) {
+                    log.info("Exports of {} have changed, reloading dependent location {}", location, loc);
+                    reloadLocation(loc);
+                }
+            }
+        }
     }
 
     /** side effect only version of lookup(), addresses #8 in a little bit hakish way.
@@ -166,10 +476,24 @@ public class ContextParentBean implements Registry,
      * Resolves configs paths and build nested children contexts.
      */
     public void afterPropertiesSet() throws Exception {
+        registerStartupMetrics();
+
+        if (classResolutionRetained.compareAndSet(false, true)) {
+            ClassResolutionCache.getSharedInstance().retain(RESOLUTION_CLASS_LOADER);
+        }
+
+        long start = System.nanoTime();
         List<String> configLocations = new ArrayList<>();
         List<String> resolvedConfigLocations = resolveConfigLocations(configLocations);
         List<String> narrowedConfigLocations = excludeConfigLocations(resolvedConfigLocations);
+
+        long analysisStart = System.nanoTime();
+        startupMetrics.setResolveNanos(analysisStart - start);
         this.resultConfigLocations = analyzeDependencies(narrowedConfigLocations);
+        startupMetrics.setAnalysisNanos(System.nanoTime() - analysisStart);
+
+        // patterns aren't needed anymore, resources are kept for the children
+        resolvedPatterns.clear();
     }
 
     public void onApplicationEvent(ApplicationEvent event) {
@@ -181,41 +505,81 @@ public class ContextParentBean implements Registry,
     }
 
     public void destroy() throws Exception {
-        Collections.reverse(children);
-        for (ConfigurableApplicationContext child : children) {
-            child.close();
+        List<String> blocking = new ArrayList<>();
+
+        // closes the contexts when the timeout is set, so they can be abandoned when blocked
+        ExecutorService closer = null;
+        if (childContextShutdownTimeout > 0) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("close-child-context-");
+            threadFactory.setDaemon(true);
+            closer = Executors.newCachedThreadPool(threadFactory);
+        }
+        try {
+            if (childContextShutdownExecutor != null && resultConfigLocations != null) {
+                closeChildContextsConcurrently(blocking, closer);
+            } else {
+                closeChildContextsSequentially(blocking, closer);
+            }
+        } finally {
+            if (closer != null) {
+                closer.shutdown();
+            }
+        }
+        if (!blocking.isEmpty()) {
+            reportBlockingChildContexts(blocking);
+        }
+        unregisterStartupMetrics();
+
+        // other beans may still use the cached classes
+        if (classResolutionRetained.compareAndSet(true, false)) {
+            ClassResolutionCache.getSharedInstance().release(RESOLUTION_CLASS_LOADER);
         }
     }
 
 
+    /**
+     * Reports the child contexts that haven't been closed within the
+     * {@link #setChildContextShutdownTimeout(long) shutdown timeout}; just logs them by default.
+     *
+     * @param blocking Display names of the contexts that are still closing.
+     */
+    protected void reportBlockingChildContexts(List<String> blocking) {
+        log.warn("Child contexts have not been closed within {} ms, shutdown is blocked by: {}",
+                childContextShutdownTimeout, blocking);
+    }
+
     protected List<String> analyzeDependencies(List<String> configLocations) throws Exception {
         return configLocations;
     }
 
     protected List<String> excludeConfigLocations(List<String> configLocations) throws Exception {
+        Set<String> excluded = new HashSet<>();
         for (String location : excludeConfigLocations) {
-            configLocations.removeAll(collectConfigLocations(location));
+            excluded.addAll(collectConfigLocations(location));
         }
+        configLocations.removeAll(excluded);
+
         return configLocations;
     }
 
     protected List<String> resolveConfigLocations(List<String> configLocations) throws Exception {
         PathMatchingResourcePatternResolver pmrpr = new PathMatchingResourcePatternResolver();
+        Set<String> resolved = new LinkedHashSet<>(configLocations);
 
         for (String location : this.configLocations) {
             boolean wildcard = pmrpr.getPathMatcher().isPattern(location);
             List<String> collectedLocations = collectConfigLocations(location);
 
             for (String locName : collectedLocations) {
-                if (!configLocations.contains(locName) && wildcard) {
-                    configLocations.add(locName);
-                }
+                // explicitly specified location moves to the end, wildcard keeps the first position
                 if (!wildcard) {
-                    configLocations.remove(locName);
-                    configLocations.add(locName);
+                    resolved.remove(locName);
                 }
+                resolved.add(locName);
             }
         }
+        configLocations.clear();
+        configLocations.addAll(resolved);
 
         log.info("resolved locations: {}", configLocations);
 
@@ -225,50 +589,611 @@ public class ContextParentBean implements Registry,
     protected void addToFailedLocations(String loc) {
     }
 
+    /**
+     * Returns locations that must be reloaded when exports of the given location change, i.e. the
+     * ones that import services from it, directly or transitively. This implementation doesn't know
+     * anything about the imports, so it returns all the following locations.
+     *
+     * @param location The resolved config location.
+     * @return A collection of locations, may be empty but not <tt>null</tt>.
+     */
+    protected Collection<String> getDependentLocations(String location) {
+        int index = resultConfigLocations.indexOf(location);
+
+        return index >= 0
+                ? new HashSet<>(resultConfigLocations.subList(index + 1, resultConfigLocations.size()))
+                : Collections.<String>emptySet();
+    }
 
-    private List<String> collectConfigLocations(String location) throws IOException {
-        List<String> result = new ArrayList<>();
+    /**
+     * Returns whether the child context of the given location should not be initialized on startup,
+     * but later when one of its services is needed. This implementation doesn't support lazy
+     * locations, so it always returns false.
+     */
+    protected boolean isLazyLocation(String location) {
+        return false;
+    }
+
+    /**
+     * Initializes the lazy location that exports the given service, and the lazy locations it
+     * depends on, if it hasn't been initialized yet. This implementation doesn't know which
+     * location exports the service, so it does nothing.
+     *
+     * @param serviceName The name of the requested service.
+     * @return Whether any location has been initialized.
+     */
+    protected boolean activateExporter(String serviceName) {
+        return false;
+    }
+
+    /**
+     * Returns locations of the contexts that must be initialized before the context from the given
+     * location, i.e. the ones it imports services from. This implementation doesn't know anything
+     * about the imports, so it just returns the preceding location.
+     *
+     * @param location The resolved config location.
+     * @return A collection of locations, may be empty but not <tt>null</tt>.
+     */
+    protected Collection<String> getLocationDependencies(String location) {
+        int index = resultConfigLocations.indexOf(location);
+
+        return index > 0
+                ? Collections.singletonList(resultConfigLocations.get(index - 1))
+                : Collections.<String>emptyList();
+    }
+
+
+    /**
+     * Resolves the location pattern into URIs of the matching resources. Each pattern is resolved
+     * only once, the resources are remembered for {@link #getResolvedResource(String)}.
+     */
+    List<String> collectConfigLocations(String location) throws IOException {
+        List<String> result = resolvedPatterns.get(location);
+        if (result != null) {
+            return result;
+        }
         Resource[] resources = context.getResources(location);
+        result = new ArrayList<>(resources.length);
 
         for (Resource resource : resources) {
-            result.add(resource.getURI().toString());
+            String uri = resource.getURI().toString();
+            result.add(uri);
+            resolvedResources.put(uri, resource);
         }
+        resolvedPatterns.put(location, result);
+
         return result;
     }
 
+    /**
+     * @param location The resolved location.
+     * @return The resource resolved from the location during startup, or a new one if it
+     *         hasn't been resolved.
+     */
+    Resource getResolvedResource(String location) {
+        Resource resource = resolvedResources.get(location);
+        return resource != null ? resource : context.getResource(location);
+    }
+
     void initializeChildContexts() {
+        long start = System.nanoTime();
+        Map<String, Collection<String>> dependencies = collectLocationDependencies();
+
+        try {
+            try {
+                if (childContextExecutor != null) {
+                    initializeChildContextsConcurrently(dependencies);
+                } else {
+                    for (String loc : resultConfigLocations) {
+                        if (ignoredLocations.contains(loc) || isLazyLocation(loc)) {
+                            continue;
+                        }
+                        List<ConfigurableApplicationContext> created = new ArrayList<>(1);
+                        try {
+                            createChildContexts(loc, created);
+                        } finally {
+                            synchronized (children) {
+                                children.addAll(created);
+                            }
+                        }
+                    }
+                }
+            } finally {
+                startupMetrics.setChildrenNanos(System.nanoTime() - start);
+                startupMetrics.computeCriticalPath(resultConfigLocations, dependencies);
+            }
+            if (warmupExecutor != null) {
+                warmUpServices(dependencies);
+            }
+        } finally {
+            if (logStartupCriticalPath) {
+                log.info("{}{}", startupMetrics.getStartupReport(), startupMetrics.getCriticalPathReport());
+            }
+        }
+    }
+
+    private Map<String, Collection<String>> collectLocationDependencies() {
+        Map<String, Collection<String>> dependencies = new HashMap<>();
         for (String loc : resultConfigLocations) {
-            if (ignoredLocations.contains(loc)) {
-                continue;
+            dependencies.put(loc, getLocationDependencies(loc));
+        }
+        return dependencies;
+    }
+
+    private void initializeChildContextsConcurrently(Map<String, Collection<String>> dependencies) {
+        final Map<String, List<ConfigurableApplicationContext>> created = new ConcurrentHashMap<>();
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        final DependencyOrderedRunner runner =
+                new DependencyOrderedRunner(childContextExecutor, resultConfigLocations, dependencies);
+
+        try {
+            runner.run(new DependencyOrderedRunner.Task() {
+                public void run(String loc) {
+                    // don't hold the lock of ignoredLocations while checking lazy locations
+                    if (isLazyLocation(loc)) {
+                        return;
+                    }
+                    synchronized (ignoredLocations) {
+                        if (ignoredLocations.contains(loc)) {
+                            return;
+                        }
+                    }
+                    List<ConfigurableApplicationContext> contexts = new ArrayList<>(1);
+                    created.put(loc, contexts);
+                    try {
+                        createChildContexts(loc, contexts);
+                    } catch (RuntimeException ex) {
+                        failure.compareAndSet(null, ex);
+                        runner.abort();
+                    }
+                }
+            });
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new IllegalStateException("Interrupted while initializing child contexts", ex));
+        }
+
+        // keep the children in the same order as when initialized sequentially
+        synchronized (children) {
+            for (String loc : resultConfigLocations) {
+                if (created.containsKey(loc)) {
+                    children.addAll(created.get(loc));
+                }
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * Closes child contexts one by one in the reverse order of initialization. An interrupt doesn't
+     * stop the shutdown, the flag is cleared while waiting for the contexts and restored afterwards.
+     */
+    private void closeChildContextsSequentially(List<String> blocking, ExecutorService closer) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            synchronized (children) {
+                Collections.reverse(children);
+                for (ConfigurableApplicationContext child : children) {
+                    interrupted |= closeChildContext(child, blocking, closer);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Closes child contexts in the reverse dependency order, i.e. each location after all the
+     * locations that depend on it. The contexts of a single location are closed in the reverse
+     * order of their creation. When interrupted, the locations that haven't been started yet are
+     * closed one by one in the current thread and the interrupt flag is restored afterwards.
+     *
+     * @param blocking The list to add display names of the contexts that haven't been closed
+     *                 within the timeout into.
+     * @param closer The executor to close the contexts on when the timeout is set.
+     */
+    private void closeChildContextsConcurrently(final List<String> blocking, final ExecutorService closer) {
+        List<String> locations = new ArrayList<>();
+        Map<String, Collection<String>> dependents = new HashMap<>();
+
+        for (String loc : resultConfigLocations) {
+            if (locationChildren.containsKey(loc)) {
+                locations.add(0, loc);
+                dependents.put(loc, new ArrayList<String>());
+            }
+        }
+        for (String loc : locations) {
+            for (String dependency : getLocationDependencies(loc)) {
+                if (dependents.containsKey(dependency)) {
+                    dependents.get(dependency).add(loc);
+                }
             }
+        }
+        // a location is closed by whoever adds it first, a task or the interrupted thread
+        final Set<String> closing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        DependencyOrderedRunner runner = new DependencyOrderedRunner(childContextShutdownExecutor, locations, dependents);
+        try {
+            runner.run(new DependencyOrderedRunner.Task() {
+                public void run(String loc) {
+                    if (closing.add(loc) && closeLocationChildren(loc, blocking, closer)) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        } catch (InterruptedException ex) {
+            runner.abort();
+            log.warn("Interrupted while closing child contexts, closing the remaining ones sequentially");
+
+            // the interrupt flag is cleared by the exception, so waiting for the timeouts works
             try {
-                Resource[] resources = context.getResources(loc);
+                for (String loc : locations) {
+                    if (closing.add(loc)) {
+                        closeLocationChildren(loc, blocking, closer);
+                    }
+                }
+            } finally {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 
-                for (final Resource res : resources) {
-                    try {
-                        ConfigurableApplicationContext child = createChildContext(res, context);
-                        children.add(child);
-                    } catch (Exception e) {
-                        log.error("Failed to process resource [{}] from location [{}] ", new Object[]{res.getURI(), loc, e});
-                        if (strictErrorHandling) {
-                            throw new RuntimeException(e);
+    /**
+     * @return Whether the current thread has been interrupted while waiting for a context.
+     */
+    private boolean closeLocationChildren(String location, List<String> blocking, ExecutorService closer) {
+        boolean interrupted = false;
+        List<ConfigurableApplicationContext> contexts = locationChildren.get(location);
+        for (int i = contexts.size() - 1; i >= 0; i--) {
+            interrupted |= closeChildContext(contexts.get(i), blocking, closer);
+        }
+        return interrupted;
+    }
+
+    /**
+     * Closes the child context, or submits its close to the <tt>closer</tt> when the shutdown
+     * timeout is set and waits at most the timeout for it. A context that is not closed in time,
+     * or while the current thread is interrupted, is added to the blocking ones.
+     *
+     * @return Whether the current thread has been interrupted while waiting; the interrupt flag
+     *         is cleared, so the caller can wait for the remaining contexts.
+     */
+    private boolean closeChildContext(final ConfigurableApplicationContext child, List<String> blocking,
+                                      ExecutorService closer) {
+        Runnable close = new Runnable() {
+            public void run() {
+                try {
+                    child.close();
+                } catch (RuntimeException ex) {
+                    log.error("Failed to close child context {}", child.getDisplayName(), ex);
+                }
+            }
+        };
+        if (closer == null) {
+            close.run();
+            return false;
+        }
+        boolean interrupted = false;
+        Future<?> closing = closer.submit(close);
+        try {
+            closing.get(childContextShutdownTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            interrupted = true;
+        } catch (ExecutionException ex) {
+            log.error("Failed to close child context {}", child.getDisplayName(), ex.getCause());
+        } catch (TimeoutException ex) {
+            // reported below
+        }
+        if (!closing.isDone()) {
+            log.warn("Child context {} is still closing after {} ms", child.getDisplayName(), childContextShutdownTimeout);
+            synchronized (blocking) {
+                blocking.add(child.getDisplayName());
+            }
+        }
+        return interrupted;
+    }
+
+    /**
+     * Obtains the exported beans of all initialized locations and resolves their import proxies,
+     * each location after the locations it depends on. A service that fails is just logged, it
+     * will be resolved again on the first call.
+     */
+    private void warmUpServices(Map<String, Collection<String>> dependencies) {
+        long start = System.nanoTime();
+
+        final Map<BeanFactory, List<String>> exportsByBeanFactory = new HashMap<>();
+        for (Map.Entry<String, ExportTargetSource> entry : exportedServices.entrySet()) {
+            BeanFactory exportingFactory = entry.getValue().getBeanFactory();
+            if (!exportsByBeanFactory.containsKey(exportingFactory)) {
+                exportsByBeanFactory.put(exportingFactory, new ArrayList<String>());
+            }
+            exportsByBeanFactory.get(exportingFactory).add(entry.getKey());
+        }
+        DependencyOrderedRunner runner = new DependencyOrderedRunner(warmupExecutor, resultConfigLocations, dependencies);
+        try {
+            runner.run(new DependencyOrderedRunner.Task() {
+                public void run(String loc) {
+                    List<ConfigurableApplicationContext> contexts = locationChildren.get(loc);
+                    if (contexts == null) {
+                        return;
+                    }
+                    long locationStart = System.nanoTime();
+                    for (ConfigurableApplicationContext child : contexts) {
+                        List<String> serviceNames = exportsByBeanFactory.get(child.getBeanFactory());
+                        if (serviceNames != null) {
+                            for (String serviceName : serviceNames) {
+                                warmUpService(serviceName, loc);
+                            }
                         }
+                    }
+                    startupMetrics.location(loc).addWarmup(System.nanoTime() - locationStart);
+                }
+            });
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while warming up exported services");
+        } finally {
+            startupMetrics.setWarmupNanos(System.nanoTime() - start);
+        }
+    }
+
+    private void warmUpService(String serviceName, String loc) {
+        try {
+            exportedServices.get(serviceName).getTarget();
+
+            ImportProxy importProxy = importProxies.get(serviceName);
+            if (importProxy != null) {
+                importProxy.warmUp();
+            }
+        } catch (BeansException ex) {
+            log.warn("Failed to warm up service '{}' exported by [{}]", new Object[]{serviceName, loc, ex});
+        }
+    }
+
+    /**
+     * Initializes child contexts of the given location after startup and appends them to the
+     * children. Does nothing if the location has been ignored.
+     */
+    void activateLocation(String loc) {
+        synchronized (ignoredLocations) {
+            if (ignoredLocations.contains(loc)) {
+                return;
+            }
+        }
+        List<ConfigurableApplicationContext> created = new ArrayList<>(1);
+        createChildContexts(loc, created);
+
+        synchronized (children) {
+            children.addAll(created);
+        }
+    }
+
+    /**
+     * Creates child contexts for all resources of the given location and adds them into the given
+     * list. When strict error handling is disabled, the failed location is recorded and the
+     * remaining resources of the location are skipped.
+     */
+    private void createChildContexts(String loc, List<ConfigurableApplicationContext> target) {
+        StartupMetrics.LocationTimings timings = startupMetrics.location(loc);
+        try {
+            long start = System.nanoTime();
+            Resource resolved = resolvedResources.get(loc);
+            Resource[] resources = resolved != null ? new Resource[]{ resolved } : context.getResources(loc);
+            timings.addResolve(System.nanoTime() - start);
+
+            List<ConfigurableApplicationContext> created = new ArrayList<>(resources.length);
+            locationChildren.put(loc, created);
+
+            for (final Resource res : resources) {
+                try {
+                    long refreshStart = System.nanoTime();
+                    ConfigurableApplicationContext child = createChildContext(res, context);
+                    timings.addRefresh(System.nanoTime() - refreshStart);
+
+                    if (child instanceof SingleResourceXmlChildContext) {
+                        timings.addParse(((SingleResourceXmlChildContext) child).getParseNanos());
+                        timings.addSingletons(((SingleResourceXmlChildContext) child).getSingletonsNanos());
+                    }
+                    target.add(child);
+                    created.add(child);
+                } catch (Exception e) {
+                    log.error("Failed to process resource [{}] from location [{}] ", new Object[]{res.getURI(), loc, e});
+                    if (strictErrorHandling) {
+                        throw new RuntimeException(e);
+                    }
+                    synchronized (ignoredLocations) {
                         nestedContextsExceptions.put(loc, e);
                         addToFailedLocations(loc);
-                        break;
                     }
+                    break;
                 }
-            } catch (IOException e) {
-                log.error("Failed to process configuration from [{}]", loc, e);
-                if (strictErrorHandling) {
-                    throw new RuntimeException(e);
-                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to process configuration from [{}]", loc, e);
+            if (strictErrorHandling) {
+                throw new RuntimeException(e);
+            }
+            synchronized (ignoredLocations) {
                 addToFailedLocations(loc);
             }
         }
     }
 
+    /**
+     * Registers the caller as a waiter for export of the service. The caller must
+     * {@link #leaveExport(String, ExportLatch) leave} the latch when done waiting.
+     *
+     * @return Latch that is completed when the service is exported, an already completed one if
+     *         the service has been exported.
+     */
+    private ExportLatch awaitExport(String serviceName) {
+        ExportLatch latch;
+
+        while (true) {
+            latch = pendingExports.get(serviceName);
+
+            if (latch == null) {
+                ExportLatch created = new ExportLatch();
+                latch = pendingExports.putIfAbsent(serviceName, created);
+                if (latch == null) {
+                    latch = created;
+                }
+            }
+            if (latch.enter()) {
+                break;
+            }
+            // abandoned by its last waiter, it's being removed
+            pendingExports.remove(serviceName, latch);
+        }
+        // the service may have been exported before the latch has been registered
+        ExportTargetSource exported = exportedServices.get(serviceName);
+        if (exported != null) {
+            latch.complete(exported);
+            pendingExports.remove(serviceName, latch);
+        }
+        return latch;
+    }
+
+    /**
+     * Unregisters the caller as a waiter for export of the service. The latch is removed when
+     * it's not completed and nobody else waits for it, so imports of services that are never
+     * exported don't leak latches.
+     */
+    private void leaveExport(String serviceName, ExportLatch latch) {
+        if (latch.leave()) {
+            pendingExports.remove(serviceName, latch);
+        }
+    }
+
+    /**
+     * Closes child contexts of the location and creates them again. Exports of the location are
+     * suspended meanwhile, the ones not exported by the new contexts are unbound.
+     */
+    private void reloadLocation(String loc) {
+        List<ExportTargetSource> suspended = new ArrayList<>();
+        for (String serviceName : getExportedContract(loc).keySet()) {
+            ExportTargetSource exportTargetSource = exportedServices.get(serviceName);
+            exportTargetSource.suspend();
+            suspended.add(exportTargetSource);
+        }
+        try {
+            List<ConfigurableApplicationContext> oldChildren = locationChildren.remove(loc);
+            for (int i = oldChildren.size() - 1; i >= 0; i--) {
+                oldChildren.get(i).close();
+            }
+            synchronized (ignoredLocations) {
+                ignoredLocations.remove(loc);
+                nestedContextsExceptions.remove(loc);
+            }
+            log.info("Reloading location {}", loc);
+
+            List<ConfigurableApplicationContext> newChildren = new ArrayList<>(1);
+            try {
+                createChildContexts(loc, newChildren);
+            } finally {
+                replaceChildren(oldChildren, newChildren);
+            }
+        } finally {
+            for (ExportTargetSource exportTargetSource : suspended) {
+                if (!exportTargetSource.isBound()) {
+                    exportTargetSource.unbind();
+                }
+            }
+        }
+    }
+
+    private void replaceChildren(List<ConfigurableApplicationContext> oldChildren,
+                                 List<ConfigurableApplicationContext> newChildren) {
+        synchronized (children) {
+            int index = oldChildren.isEmpty() ? -1 : children.indexOf(oldChildren.get(0));
+            children.removeAll(oldChildren);
+            children.addAll(index >= 0 ? index : children.size(), newChildren);
+        }
+    }
+
+    /**
+     * @return Interfaces of the services currently exported by the location, keyed by name.
+     */
+    private Map<String, Class<?>> getExportedContract(String loc) {
+        Set<BeanFactory> beanFactories = new HashSet<>();
+        for (ConfigurableApplicationContext child : locationChildren.get(loc)) {
+            if (child.isActive()) {
+                beanFactories.add(child.getBeanFactory());
+            }
+        }
+        Map<String, Class<?>> contract = new HashMap<>();
+        for (Map.Entry<String, ExportTargetSource> entry : exportedServices.entrySet()) {
+            ExportTargetSource exportTargetSource = entry.getValue();
+            if (exportTargetSource.isBound() && beanFactories.contains(exportTargetSource.getBeanFactory())) {
+                contract.put(entry.getKey(), exportTargetSource.getTargetClass());
+            }
+        }
+        return contract;
+    }
+
+    /**
+     * Removes import proxies of the services whose interface has changed, so the dependent
+     * locations create new ones when reloaded.
+     */
+    private void removeChangedImportProxies(Map<String, Class<?>> oldContract, Map<String, Class<?>> newContract) {
+        for (Map.Entry<String, Class<?>> entry : newContract.entrySet()) {
+            Class<?> oldInterface = oldContract.get(entry.getKey());
+            String importProxyName = entry.getKey() + BEAN_DEF_SUFFIX;
+
+            if (oldInterface != null && oldInterface != entry.getValue()) {
+                importProxies.remove(entry.getKey());
+
+                if (((BeanDefinitionRegistry) beanFactory).containsBeanDefinition(importProxyName)) {
+                    ((BeanDefinitionRegistry) beanFactory).removeBeanDefinition(importProxyName);
+                }
+            }
+        }
+    }
+
+    private void registerStartupMetrics() {
+        if (startupMetricsObjectName == null || registeredMetricsName != null) {
+            return;
+        }
+        try {
+            ObjectName objectName = new ObjectName(startupMetricsObjectName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(startupMetrics, objectName);
+            registeredMetricsName = objectName;
+        } catch (JMException ex) {
+            log.warn("Failed to register startup metrics as MBean {}", startupMetricsObjectName, ex);
+        }
+    }
+
+    private void unregisterStartupMetrics() {
+        if (registeredMetricsName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredMetricsName);
+        } catch (JMException ex) {
+            log.warn("Failed to unregister startup metrics MBean {}", registeredMetricsName, ex);
+        }
+        registeredMetricsName = null;
+    }
+
+    /**
+     * Returns bean definitions that have been already parsed from the given resource, so the child
+     * context doesn't have to parse it again. Each registry is handed over only once.
+     *
+     * @param resource The resource of a child context.
+     * @return The parsed bean definitions, or <tt>null</tt> if there are none.
+     */
+    protected BeanDefinitionRegistry takeParsedBeanDefinitions(Resource resource) {
+        return null;
+    }
+
     ConfigurableApplicationContext createChildContext(Resource res, ApplicationContext parent) throws Exception {
+        BeanDefinitionRegistry parsedDefinitions = takeParsedBeanDefinitions(res);
+
         if (childContextPrototype != null && childContextPrototype.length() > 0) {
             try {
                 return (ConfigurableApplicationContext) parent.getBean(childContextPrototype, res, parent);
@@ -278,7 +1203,196 @@ public class ContextParentBean implements Registry,
             }
         }
 
-        return new SingleResourceXmlChildContext(res, parent);
+        return new SingleResourceXmlChildContext(res, parsedDefinitions, parent);
     }
 
+
+    /**
+     * Latch that is completed with the target source of an exported service. It counts its
+     * waiters; when the last one leaves before the latch is completed, the latch is abandoned and
+     * nobody can {@link #enter() enter} it anymore.
+     */
+    private static class ExportLatch {
+
+        private final CountDownLatch exported = new CountDownLatch(1);
+        private volatile ExportTargetSource targetSource;
+        private int waiters = 0;
+        private boolean abandoned = false;
+
+        synchronized void complete(ExportTargetSource targetSource) {
+            if (this.targetSource == null) {
+                this.targetSource = targetSource;
+                exported.countDown();
+            }
+        }
+
+        /**
+         * @return <tt>false</tt> if the latch has been abandoned and should not be waited for.
+         */
+        synchronized boolean enter() {
+            if (abandoned) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        /**
+         * @return Whether the latch has been abandoned by this call, i.e. it should be removed.
+         */
+        synchronized boolean leave() {
+            if (--waiters == 0 && targetSource == null) {
+                abandoned = true;
+                return true;
+            }
+            return false;
+        }
+
+        ExportTargetSource await() throws InterruptedException {
+            exported.await();
+            return targetSource;
+        }
+
+        /**
+         * @return The target source, or <tt>null</tt> if the timeout elapsed.
+         */
+        ExportTargetSource await(long timeout, TimeUnit unit) throws InterruptedException {
+            exported.await(timeout, unit);
+            return targetSource;
+        }
+    }
+
+    /**
+     * Future of an import proxy, see {@link #lookupAsync(String, Class)}. It can't be cancelled.
+     */
+    private class ImportFuture<T> implements Future<T> {
+
+        private final String serviceName;
+        private final Class<T> serviceInterface;
+
+        ImportFuture(String serviceName, Class<T> serviceInterface) {
+            this.serviceName = serviceName;
+            this.serviceInterface = serviceInterface;
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+
+        public boolean isDone() {
+            return exportedServices.containsKey(serviceName) || context.containsBean(serviceName + TARGET_SOURCE_SUFFIX);
+        }
+
+        public T get() throws InterruptedException, ExecutionException {
+            if (!isExportedOrActivated()) {
+                ExportLatch latch = awaitExport(serviceName);
+                try {
+                    latch.await();
+                } finally {
+                    leaveExport(serviceName, latch);
+                }
+            }
+            return getImportProxy();
+        }
+
+        public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!isExportedOrActivated()) {
+                ExportLatch latch = awaitExport(serviceName);
+                try {
+                    if (latch.await(timeout, unit) == null) {
+                        throw new TimeoutException("Service '" + serviceName + "' has not been exported in time");
+                    }
+                } finally {
+                    leaveExport(serviceName, latch);
+                }
+            }
+            return getImportProxy();
+        }
+
+        private boolean isExportedOrActivated() {
+            return isDone() || findExportTargetSource(serviceName) != null;
+        }
+
+        private T getImportProxy() throws ExecutionException {
+            try {
+                return lookup(serviceName, serviceInterface);
+            } catch (BeansException ex) {
+                throw new ExecutionException(ex);
+            }
+        }
+    }
+
+    /**
+     * Import proxy of a single service. The bean definition of the proxy is registered in the root
+     * bean factory when the proxy is obtained for the first time, then the proxy is cached.
+     */
+    private class ImportProxy {
+
+        private final String serviceName;
+        private final Class<?> serviceInterface;
+        private volatile Object proxy;
+        private volatile LookupTargetSource targetSource;
+
+        ImportProxy(String serviceName, Class<?> serviceInterface) {
+            this.serviceName = serviceName;
+            this.serviceInterface = serviceInterface;
+        }
+
+        <T> T getProxy(Class<T> requiredType) {
+            Object result = proxy;
+
+            if (result == null) {
+                synchronized (this) {
+                    result = proxy;
+                    if (result == null) {
+                        proxy = result = createProxy();
+                    }
+                }
+            }
+            if (!requiredType.isInstance(result)) {
+                throw new BeanNotOfRequiredTypeException(serviceName + BEAN_DEF_SUFFIX, requiredType, result.getClass());
+            }
+            return requiredType.cast(result);
+        }
+
+        /**
+         * Resolves the export of the proxied service, if the proxy has been created by this
+         * registry.
+         */
+        void warmUp() {
+            LookupTargetSource localTargetSource = targetSource;
+            if (localTargetSource != null) {
+                localTargetSource.getTarget();
+            }
+        }
+
+        private Object createProxy() {
+            log.debug("Looking up service '{}' with interface '{}'", serviceName, serviceInterface.getSimpleName());
+
+            String importProxyName = serviceName + BEAN_DEF_SUFFIX;
+
+            if (!context.containsBean(importProxyName)) {
+                Class<?> proxyFactoryClass = directImportProxies && serviceInterface.isInterface()
+                        ? DirectImportProxyFactoryBean.class
+                        : ProxyFactoryBean.class;
+                RootBeanDefinition proxyBeanDef = new RootBeanDefinition(proxyFactoryClass);
+
+                targetSource = new LookupTargetSource(serviceName, serviceInterface, serviceName + TARGET_SOURCE_SUFFIX,
+                        context, ContextParentBean.this);
+                proxyBeanDef.setRole(ROLE_INFRASTRUCTURE);
+                proxyBeanDef.getPropertyValues().add("targetSource", targetSource);
+                if (proxyFactoryClass == DirectImportProxyFactoryBean.class && staticImportTargets) {
+                    proxyBeanDef.getPropertyValues().add("staticTarget", true);
+                }
+
+                ((BeanDefinitionRegistry) beanFactory).registerBeanDefinition(importProxyName, proxyBeanDef);
+            }
+
+            return context.getBean(importProxyName, serviceInterface);
+        }
+    }
 }
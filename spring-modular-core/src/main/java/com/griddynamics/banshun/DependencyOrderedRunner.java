@@ -0,0 +1,168 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a task for each of the given nodes (locations) on an {@link Executor}. The task for a node
+ * is started only after the tasks for all of its prerequisites have finished, so nodes that don't
+ * depend on each other are processed concurrently.
+ *
+ * <p>The nodes are expected to be in a topological order. A prerequisite that doesn't precede
+ * the node in this order is ignored; this breaks cycles (if any) the same way as the sequential
+ * processing does.</p>
+ *
+ * <p>The executor may run the tasks in the calling thread, e.g. when it rejects them. The tasks
+ * that become ready meanwhile are queued and submitted in a loop, not recursively, so a long chain
+ * of dependent nodes doesn't overflow the stack.</p>
+ */
+class DependencyOrderedRunner {
+
+    private final Executor executor;
+    private final List<String> nodes;
+
+    private final Map<String, List<String>> dependents = new HashMap<>();
+    private final Map<String, AtomicInteger> unfinishedPrerequisites = new HashMap<>();
+
+    private volatile boolean aborted = false;
+    private CountDownLatch unfinishedNodes;
+
+    /**
+     * Commands that have become ready in the current thread while it was submitting another one;
+     * <tt>null</tt> if the thread isn't submitting.
+     */
+    private final ThreadLocal<Deque<Runnable>> readyCommands = new ThreadLocal<>();
+
+
+    /**
+     * @param executor The executor to run tasks on.
+     * @param nodes The nodes in a topological order.
+     * @param prerequisites The nodes that must be finished before the key node may be started.
+     */
+    DependencyOrderedRunner(Executor executor, List<String> nodes, Map<String, ? extends Collection<String>> prerequisites) {
+        this.executor = executor;
+        this.nodes = nodes;
+
+        Map<String, Integer> positions = new HashMap<>(nodes.size() * 2);
+        for (String node : nodes) {
+            positions.put(node, positions.size());
+            dependents.put(node, new ArrayList<String>(2));
+        }
+        for (String node : nodes) {
+            Set<String> required = new HashSet<>();
+            Collection<String> declared = prerequisites.get(node);
+
+            if (declared != null) {
+                for (String prerequisite : declared) {
+                    Integer position = positions.get(prerequisite);
+
+                    if (position != null && position < positions.get(node) && required.add(prerequisite)) {
+                        dependents.get(prerequisite).add(node);
+                    }
+                }
+            }
+            unfinishedPrerequisites.put(node, new AtomicInteger(required.size()));
+        }
+    }
+
+
+    /**
+     * Runs the task for all nodes and blocks until all of them are finished or skipped.
+     */
+    void run(Task task) throws InterruptedException {
+        unfinishedNodes = new CountDownLatch(nodes.size());
+
+        for (String node : nodes) {
+            if (unfinishedPrerequisites.get(node).get() == 0) {
+                submit(node, task);
+            }
+        }
+        unfinishedNodes.await();
+    }
+
+    /**
+     * Skips tasks for all nodes that haven't been started yet. Already running tasks are not affected.
+     */
+    void abort() {
+        aborted = true;
+    }
+
+    boolean isAborted() {
+        return aborted;
+    }
+
+
+    private void submit(final String node, final Task task) {
+        Runnable command = new Runnable() {
+            public void run() {
+                try {
+                    if (!aborted) {
+                        task.run(node);
+                    }
+                } finally {
+                    finish(node, task);
+                }
+            }
+        };
+        Deque<Runnable> ready = readyCommands.get();
+        if (ready != null) {
+            // the executor runs the submitting command inline, leave this one to its loop
+            ready.add(command);
+            return;
+        }
+        ready = new ArrayDeque<>();
+        readyCommands.set(ready);
+        try {
+            for (Runnable next = command; next != null; next = ready.poll()) {
+                execute(next);
+            }
+        } finally {
+            readyCommands.remove();
+        }
+    }
+
+    private void execute(Runnable command) {
+        try {
+            executor.execute(command);
+        } catch (RejectedExecutionException ex) {
+            command.run();
+        }
+    }
+
+    private void finish(String node, Task task) {
+        for (String dependent : dependents.get(node)) {
+            if (unfinishedPrerequisites.get(dependent).decrementAndGet() == 0) {
+                submit(dependent, task);
+            }
+        }
+        unfinishedNodes.countDown();
+    }
+
+
+    interface Task {
+
+        /**
+         * Processes the given node. This method should not throw any exception; a failure of
+         * the node should be handled inside, e.g. by calling {@link #abort()}.
+         */
+        void run(String node);
+    }
+}
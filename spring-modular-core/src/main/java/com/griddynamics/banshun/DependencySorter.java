@@ -57,7 +57,7 @@ public class DependencySorter {
 
 
     private List<Location> prepareLocations(String[] configLocations, Map<String, List<BeanReferenceInfo>> imports, Map<String, BeanReferenceInfo> exports) {
-        List<Location> locations = new LinkedList<>();
+        List<Location> locations = new ArrayList<>(configLocations.length);
         Map<String, Location> locationsMap = new HashMap<>();
 
         for (String locationName : configLocations) {
@@ -122,86 +122,184 @@ public class DependencySorter {
     }
 
     private List<Location> sortLocations() {
-        Deque<Location> stack = new LinkedList<>(locations);
+        SortingGraph graph = new SortingGraph(locations);
 
-        List<Location> sorted = pullLocationListHead(stack);
-        if (stack.isEmpty()) {
+        List<Location> sorted = graph.pullLocationListHead();
+        if (sorted.size() == locations.size()) {
             return sorted;
         }
 
-        List<Location> tail = pullLocationListTail(stack);
+        List<Location> tail = graph.pullLocationListTail();
+        List<Location> unresolved = graph.getUnresolvedLocations();
 
-        if (!stack.isEmpty()) {
+        if (!unresolved.isEmpty()) {
             String message = "Cyclic dependencies found in child contexts: ";
             if (prohibitCycles) {
-                throw new BeanCreationException(message + stack);
+                throw new BeanCreationException(message + unresolved);
             }
-            log.warn(message + "{}", stack);
+            log.warn(message + "{}", unresolved);
         }
-        conflictContextGroup = new ArrayList<>(stack);
+        conflictContextGroup = unresolved;
 
-        sorted.addAll(stack); //add conflict locations
-        sorted.addAll(tail);  //add rest
+        sorted.addAll(unresolved); //add conflict locations
+        sorted.addAll(tail);       //add rest
 
         return sorted;
     }
 
-    private List<Location> pullLocationListHead(Deque<Location> locations) {
-        Set<String> resolvedBeans = new LinkedHashSet<>();
-        List<Location> resolvedLocations = new LinkedList<>();
+    private String[] collectLocationNames(List<Location> locations) {
+        List<String> result = new ArrayList<>(locations.size());
 
-        for (Iterator<Location> it = locations.iterator(); it.hasNext();) {
-            Location location = it.next();
+        for (Location location : locations) {
+            result.add(location.locationName);
+        }
+        return result.toArray(new String[result.size()]);
+    }
 
-            if (resolvedBeans.containsAll(location.getImportBeanNames())) {
-                resolvedBeans.addAll(location.getExportBeanNames());
-                resolvedLocations.add(location);
 
-                it.remove(); //remove location from unresolved
-                it = locations.iterator(); //reset iterator
+    /**
+     * Index-based representation of the locations graph used for sorting. Names of the imported and
+     * exported services are {@link NameInterner interned} only once, then both phases of the sorting
+     * work with arrays of service IDs and run in O((V + E) log V) time, where V is number of the
+     * locations and E is number of the imports.
+     *
+     * <p>The head is built by Kahn's algorithm that always takes the first ready location in the
+     * original order, i.e. a location whose all imports are already exported by the head. The tail
+     * is built backwards by taking the last location whose all exports are no longer imported by
+     * any of the remaining locations. Whatever remains are locations with cyclic dependencies.</p>
+     */
+    private static class SortingGraph {
+
+        private final List<Location> locations;
+        private final int[][] importIds;
+        private final int[][] exportIds;
+        private final int[] exporters;
+        private final int[][] importers;
+        private final boolean[] pulled;
+
+
+        SortingGraph(List<Location> locations) {
+            int size = locations.size();
+            NameInterner serviceIds = new NameInterner();
+
+            this.locations = new ArrayList<>(locations);
+            this.importIds = new int[size][];
+            this.exportIds = new int[size][];
+            this.pulled = new boolean[size];
+
+            for (int i = 0; i < size; i++) {
+                Location location = this.locations.get(i);
+                importIds[i] = internAll(serviceIds, location.getImportBeanNames());
+                exportIds[i] = internAll(serviceIds, location.getExportBeanNames());
             }
-        }
-        return resolvedLocations;
-    }
 
-    private List<Location> pullLocationListTail(Deque<Location> locations) {
-        LinkedList<Location> resolvedLocations = new LinkedList<>();
-        List<String> annihilatedExports = new LinkedList<>();
+            int servicesCount = serviceIds.size();
+            int[] importersCounts = new int[servicesCount];
+            this.exporters = new int[servicesCount];
+            this.importers = new int[servicesCount][];
 
-        for (Iterator<Location> it = locations.descendingIterator(); it.hasNext();) {
-            Location location = it.next();
+            Arrays.fill(exporters, -1);
+            for (int i = 0; i < size; i++) {
+                for (int serviceId : exportIds[i]) {
+                    exporters[serviceId] = i;
+                }
+                for (int serviceId : importIds[i]) {
+                    importersCounts[serviceId]++;
+                }
+            }
+            for (int serviceId = 0; serviceId < servicesCount; serviceId++) {
+                importers[serviceId] = new int[importersCounts[serviceId]];
+                importersCounts[serviceId] = 0;
+            }
+            for (int i = 0; i < size; i++) {
+                for (int serviceId : importIds[i]) {
+                    importers[serviceId][importersCounts[serviceId]++] = i;
+                }
+            }
+        }
 
-            if (annihilatedExports.containsAll(location.getExportBeanNames())) {
-                it.remove(); //remove location from unresolved
-                resolvedLocations.addFirst(location);
 
-                for (BeanReferenceInfo imp : location.importBeans) {
-                    if (isSomewhereImported(locations, imp)) {
-                        annihilatedExports.add(imp.getServiceName());
+        List<Location> pullLocationListHead() {
+            List<Location> resolvedLocations = new ArrayList<>(locations.size());
+            int[] unresolvedImports = new int[locations.size()];
+            Queue<Integer> ready = new PriorityQueue<>();
+
+            for (int i = 0; i < locations.size(); i++) {
+                unresolvedImports[i] = importIds[i].length;
+                if (unresolvedImports[i] == 0) {
+                    ready.add(i);
+                }
+            }
+            while (!ready.isEmpty()) {
+                int current = ready.poll();
+                pulled[current] = true;
+                resolvedLocations.add(locations.get(current));
+
+                for (int serviceId : exportIds[current]) {
+                    for (int importer : importers[serviceId]) {
+                        if (--unresolvedImports[importer] == 0) {
+                            ready.add(importer);
+                        }
                     }
                 }
-                it = locations.descendingIterator(); //reset iterator
             }
+            return resolvedLocations;
         }
-        return resolvedLocations;
-    }
 
-    private boolean isSomewhereImported(Collection<Location> locations, BeanReferenceInfo importedBean) {
-        for (Location location : locations) {
-            if (location.getImportBeanNames().contains(importedBean.getServiceName())) {
-                return false;
+        List<Location> pullLocationListTail() {
+            LinkedList<Location> resolvedLocations = new LinkedList<>();
+            int[] neededExports = new int[locations.size()];
+            int[] remainingImporters = new int[exporters.length];
+            Queue<Integer> ready = new PriorityQueue<>(11, Collections.reverseOrder());
+
+            for (int i = 0; i < locations.size(); i++) {
+                if (pulled[i]) {
+                    continue;
+                }
+                for (int serviceId : importIds[i]) {
+                    remainingImporters[serviceId]++;
+                }
+                neededExports[i] = exportIds[i].length;
+                if (neededExports[i] == 0) {
+                    ready.add(i);
+                }
+            }
+            while (!ready.isEmpty()) {
+                int current = ready.poll();
+                pulled[current] = true;
+                resolvedLocations.addFirst(locations.get(current));
+
+                for (int serviceId : importIds[current]) {
+                    // the service is not imported by any remaining location anymore
+                    int exporter = exporters[serviceId];
+                    if (--remainingImporters[serviceId] == 0 && exporter >= 0 && !pulled[exporter]
+                            && --neededExports[exporter] == 0) {
+                        ready.add(exporter);
+                    }
+                }
             }
+            return resolvedLocations;
         }
-        return true;
-    }
 
-    private String[] collectLocationNames(List<Location> locations) {
-        List<String> result = new ArrayList<>(locations.size());
+        List<Location> getUnresolvedLocations() {
+            List<Location> result = new ArrayList<>();
 
-        for (Location location : locations) {
-            result.add(location.locationName);
+            for (int i = 0; i < locations.size(); i++) {
+                if (!pulled[i]) {
+                    result.add(locations.get(i));
+                }
+            }
+            return result;
+        }
+
+        private static int[] internAll(NameInterner interner, Set<String> names) {
+            int[] result = new int[names.size()];
+            int i = 0;
+            for (String name : names) {
+                result[i++] = interner.intern(name);
+            }
+            return result;
         }
-        return result.toArray(new String[result.size()]);
     }
 
 
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun;
+
+import org.springframework.aop.TargetSource;
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.cglib.proxy.*;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+
+/**
+ * Factory bean that creates a lightweight proxy of an interface, an alternative to
+ * {@link org.springframework.aop.framework.ProxyFactoryBean} for imported services.
+ *
+ * <p>The proxy is a generated class that obtains the target from the {@link TargetSource} and
+ * invokes the method on it directly, i.e. without reflection, interceptors chain and
+ * {@link TargetSource#releaseTarget(Object) releaseTarget()}. Method <tt>toString</tt> is
+ * delegated to the target as well. Methods <tt>equals</tt> and <tt>hashCode</tt> are handled by
+ * the proxy without obtaining the target, just like in Spring AOP proxies: two proxies are equal
+ * when they have equal target sources. Other methods declared by {@link Object} are invoked on
+ * the proxy itself.</p>
+ *
+ * <p>By default the target is obtained from the target source on each call, so the proxy follows
+ * a target source that is rebound when the exporting context is reloaded. When the target never
+ * changes, the proxy can be switched to a {@link #setStaticTarget(boolean) static target}; then it
+ * keeps the first resolved target and doesn't touch the target source anymore.</p>
+ */
+public class DirectImportProxyFactoryBean implements FactoryBean<Object>, BeanClassLoaderAware {
+
+    private TargetSource targetSource;
+    private ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+    private boolean staticTarget = false;
+    private Object proxy;
+
+
+    public void setTargetSource(TargetSource targetSource) {
+        this.targetSource = targetSource;
+    }
+
+    public void setBeanClassLoader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Specifies whether the proxy should keep the target once it's successfully obtained and
+     * invoke it directly on the next calls. Use it only when the target never changes, i.e. the
+     * exporting context is never reloaded.
+     *
+     * @default false
+     */
+    public void setStaticTarget(boolean staticTarget) {
+        this.staticTarget = staticTarget;
+    }
+
+    public synchronized Object getObject() {
+        if (proxy == null) {
+            proxy = createProxy();
+        }
+        return proxy;
+    }
+
+    public Class<?> getObjectType() {
+        return targetSource != null ? targetSource.getTargetClass() : null;
+    }
+
+    public boolean isSingleton() {
+        return true;
+    }
+
+
+    private Object createProxy() {
+        Assert.notNull(targetSource, "targetSource must be set");
+        Class<?> serviceInterface = targetSource.getTargetClass();
+        Assert.isTrue(serviceInterface.isInterface(), "Only interfaces can be proxied, but given: " + serviceInterface);
+
+        Enhancer enhancer = new Enhancer();
+        enhancer.setInterfaces(new Class<?>[]{ serviceInterface });
+        enhancer.setClassLoader(classLoader);
+        enhancer.setCallbackFilter(ObjectMethodsFilter.INSTANCE);
+        Dispatcher dispatcher = staticTarget
+                ? new StaticTargetDispatcher(targetSource)
+                : new TargetSourceDispatcher(targetSource);
+        enhancer.setCallbacks(new Callback[]{
+                dispatcher, NoOp.INSTANCE, new EqualsHashCodeInterceptor(targetSource) });
+
+        return enhancer.create();
+    }
+
+
+    private static class TargetSourceDispatcher implements Dispatcher {
+
+        private final TargetSource targetSource;
+
+        TargetSourceDispatcher(TargetSource targetSource) {
+            this.targetSource = targetSource;
+        }
+
+        public Object loadObject() throws Exception {
+            return targetSource.getTarget();
+        }
+    }
+
+    /**
+     * Dispatcher that obtains the target from the target source until it succeeds, then returns
+     * the resolved target. The target is read from a final field of its holder, so the calls
+     * don't need any volatile read; a thread that doesn't see the holder yet just obtains the
+     * same target from the target source again.
+     */
+    private static class StaticTargetDispatcher implements Dispatcher {
+
+        private final TargetSource targetSource;
+        private ResolvedTarget resolved;
+
+        StaticTargetDispatcher(TargetSource targetSource) {
+            this.targetSource = targetSource;
+        }
+
+        public Object loadObject() throws Exception {
+            ResolvedTarget local = resolved;
+            if (local == null) {
+                resolved = local = new ResolvedTarget(targetSource.getTarget());
+            }
+            return local.target;
+        }
+    }
+
+    private static final class ResolvedTarget {
+
+        final Object target;
+
+        ResolvedTarget(Object target) {
+            this.target = target;
+        }
+    }
+
+    /**
+     * Implements equals and hashCode of the proxy based on its target source.
+     */
+    private static class EqualsHashCodeInterceptor implements MethodInterceptor {
+
+        private static final int INDEX = 2;
+
+        private final TargetSource targetSource;
+
+        EqualsHashCodeInterceptor(TargetSource targetSource) {
+            this.targetSource = targetSource;
+        }
+
+        public Object intercept(Object proxy, Method method, Object[] args, MethodProxy methodProxy) {
+            if (method.getName().equals("hashCode")) {
+                return 31 * DirectImportProxyFactoryBean.class.hashCode() + targetSource.hashCode();
+            }
+            Object other = args[0];
+            if (other == proxy) {
+                return true;
+            }
+            if (!(other instanceof Factory)) {
+                return false;
+            }
+            Callback callback = ((Factory) other).getCallback(INDEX);
+
+            return callback instanceof EqualsHashCodeInterceptor
+                    && targetSource.equals(((EqualsHashCodeInterceptor) callback).targetSource);
+        }
+    }
+
+    /**
+     * Routes methods of the interface and toString to the dispatcher (0), equals and hashCode to
+     * the {@link EqualsHashCodeInterceptor} (2), other methods declared by Object to the proxy
+     * itself (1).
+     */
+    private static class ObjectMethodsFilter implements CallbackFilter {
+
+        static final ObjectMethodsFilter INSTANCE = new ObjectMethodsFilter();
+
+        public int accept(Method method) {
+            if (method.getDeclaringClass() != Object.class) {
+                return 0;
+            }
+            String name = method.getName();
+            if (name.equals("equals") || name.equals("hashCode")) {
+                return EqualsHashCodeInterceptor.INDEX;
+            }
+            return name.equals("toString") ? 0 : 1;
+        }
+
+        // single instance, so generated classes can be cached
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ObjectMethodsFilter;
+        }
+
+        @Override
+        public int hashCode() {
+            return ObjectMethodsFilter.class.hashCode();
+        }
+    }
+}
@@ -25,41 +25,43 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.TargetSource;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanCreationException;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanNotOfRequiredTypeException;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.apache.commons.lang3.builder.ToStringStyle.SHORT_PREFIX_STYLE;
 
+/**
+ * Target source of an exported service. It can be {@link #rebind(ExportRef) rebound} to a bean
+ * from another context when the exporting context is reloaded. While the reload is in progress,
+ * i.e. after {@link #suspend()}, callers of {@link #getTarget()} are blocked.
+ */
 public class ExportTargetSource implements TargetSource {
 
     private static final Logger log = LoggerFactory.getLogger(ExportTargetSource.class);
 
-    private final AtomicReference<Object> target = new AtomicReference<>();
-
-    private final String beanName;
-    private final Class<?> serviceInterface;
-    private final BeanFactory beanFactory;
+    private volatile Binding binding;
 
 
     public ExportTargetSource(ExportRef exportRef) {
-        this.beanName = exportRef.getBeanName();
-        this.serviceInterface = exportRef.getServiceInterface();
-        this.beanFactory = exportRef.getBeanFactory();
+        this.binding = new Binding(exportRef);
     }
 
 
     public BeanFactory getBeanFactory() {
-        return beanFactory;
+        return binding.beanFactory;
     }
 
     public String getBeanName() {
-        return beanName;
+        return binding.beanName;
     }
 
     public Class<?> getTargetClass() {
-        return serviceInterface;
+        return binding.serviceInterface;
     }
 
     public boolean isStatic() {
@@ -70,39 +72,160 @@ public class ExportTargetSource implements TargetSource {
     }
 
     public Object getTarget() throws BeansException {
-        Object localTarget = target.get();
+        Binding localBinding = binding;
+
+        if (localBinding.suspension != null) {
+            localBinding = awaitResume(localBinding);
+        }
+        if (localBinding.beanFactory == null) {
+            throw new NoSuchBeanDefinitionException(localBinding.beanName,
+                    "exporting context has been reloaded and doesn't export the service anymore");
+        }
+        Object localTarget = localBinding.target.get();
 
         if (localTarget == null) {
             // verify if declared service interface is compatible with the real bean type
-            Class<?> beanClass = beanFactory.getType(beanName);
-            if (!serviceInterface.isAssignableFrom(beanClass)) {
-                throw new BeanNotOfRequiredTypeException(beanName, serviceInterface, beanClass);
+            Class<?> beanClass = localBinding.beanFactory.getType(localBinding.beanName);
+            if (!localBinding.serviceInterface.isAssignableFrom(beanClass)) {
+                throw new BeanNotOfRequiredTypeException(localBinding.beanName, localBinding.serviceInterface, beanClass);
             }
 
-            if (target.compareAndSet(null, localTarget = beanFactory.getBean(beanName))) {
+            if (localBinding.target.compareAndSet(null, localTarget = localBinding.beanFactory.getBean(localBinding.beanName))) {
                 return localTarget;
 
             } else {
                 log.debug("Redundant initialization of ExportTargetSource for bean '{}' caused by" +
-                         "concurrency has been detected.", beanName);
-                return target.get();
+                         "concurrency has been detected.", localBinding.beanName);
+                return localBinding.target.get();
             }
         }
         return localTarget;
     }
 
+    /**
+     * @return Whether the service is currently exported, i.e. not suspended nor unbound.
+     */
+    public boolean isBound() {
+        Binding localBinding = binding;
+        return localBinding.suspension == null && localBinding.beanFactory != null;
+    }
+
+    /**
+     * Blocks callers of {@link #getTarget()} until this target source is rebound or unbound.
+     */
+    synchronized void suspend() {
+        if (binding.suspension == null) {
+            binding = binding.suspended();
+        }
+    }
+
+    /**
+     * Binds this target source to the bean of the given export reference, dropping the cached
+     * target, and resumes blocked callers.
+     */
+    synchronized void rebind(ExportRef exportRef) {
+        resume(new Binding(exportRef));
+    }
+
+    /**
+     * Marks the service as no longer exported and resumes blocked callers; they get
+     * {@link NoSuchBeanDefinitionException}.
+     */
+    synchronized void unbind() {
+        resume(binding.unbound());
+    }
+
     @Override
     public String toString() {
-        return ToStringBuilder.reflectionToString(this, SHORT_PREFIX_STYLE);
+        Binding localBinding = binding;
+        return new ToStringBuilder(this, SHORT_PREFIX_STYLE)
+                .append("beanName", localBinding.beanName)
+                .append("serviceInterface", localBinding.serviceInterface)
+                .append("beanFactory", localBinding.beanFactory)
+                .toString();
     }
 
     @Override
     public boolean equals(Object obj) {
-        return EqualsBuilder.reflectionEquals(this, obj, "target");
+        if (!(obj instanceof ExportTargetSource)) {
+            return false;
+        }
+        Binding localBinding = binding;
+        Binding otherBinding = ((ExportTargetSource) obj).binding;
+
+        return new EqualsBuilder()
+                .append(localBinding.beanName, otherBinding.beanName)
+                .append(localBinding.serviceInterface, otherBinding.serviceInterface)
+                .append(localBinding.beanFactory, otherBinding.beanFactory)
+                .isEquals();
     }
 
     @Override
     public int hashCode() {
-        return HashCodeBuilder.reflectionHashCode(this, "target");
+        Binding localBinding = binding;
+        return new HashCodeBuilder()
+                .append(localBinding.beanName)
+                .append(localBinding.serviceInterface)
+                .append(localBinding.beanFactory)
+                .toHashCode();
+    }
+
+
+    private void resume(Binding newBinding) {
+        CountDownLatch suspension = binding.suspension;
+        binding = newBinding;
+
+        if (suspension != null) {
+            suspension.countDown();
+        }
+    }
+
+    private Binding awaitResume(Binding suspended) {
+        if (suspended.suspendedBy == Thread.currentThread()) {
+            // the reloading context itself uses the service, waiting would never end
+            throw new BeanCreationException(suspended.beanName, "Exporting context of the bean is being reloaded");
+        }
+        try {
+            suspended.suspension.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BeanCreationException(suspended.beanName, "Interrupted while waiting for reload of the exporting context", ex);
+        }
+        return binding;
+    }
+
+
+    /**
+     * The exported bean with its cached instance. A binding with <tt>suspension</tt> is being
+     * reloaded, a binding without bean factory is unbound.
+     */
+    private static class Binding {
+
+        final String beanName;
+        final Class<?> serviceInterface;
+        final BeanFactory beanFactory;
+        final AtomicReference<Object> target = new AtomicReference<>();
+        final CountDownLatch suspension;
+        final Thread suspendedBy;
+
+        Binding(String beanName, Class<?> serviceInterface, BeanFactory beanFactory, CountDownLatch suspension, Thread suspendedBy) {
+            this.beanName = beanName;
+            this.serviceInterface = serviceInterface;
+            this.beanFactory = beanFactory;
+            this.suspension = suspension;
+            this.suspendedBy = suspendedBy;
+        }
+
+        Binding(ExportRef exportRef) {
+            this(exportRef.getBeanName(), exportRef.getServiceInterface(), exportRef.getBeanFactory(), null, null);
+        }
+
+        Binding suspended() {
+            return new Binding(beanName, serviceInterface, beanFactory, new CountDownLatch(1), Thread.currentThread());
+        }
+
+        Binding unbound() {
+            return new Binding(beanName, serviceInterface, null, null, null);
+        }
     }
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun;
+
+import org.springframework.beans.factory.parsing.EmptyReaderEventListener;
+import org.springframework.beans.factory.parsing.ImportDefinition;
+
+/**
+ * Listener of an XML bean definition reader that detects whether the loaded XML has imported
+ * other resources via <tt>&lt;import&gt;</tt>. Imports and exports of such XML depend on content
+ * of the imported resources, so they cannot be validated just by a fingerprint of the XML.
+ */
+class ImportsDetectingListener extends EmptyReaderEventListener {
+
+    private volatile boolean importsProcessed = false;
+
+    @Override
+    public void importProcessed(ImportDefinition importDefinition) {
+        importsProcessed = true;
+    }
+
+    /**
+     * @return Whether any <tt>&lt;import&gt;</tt> has been processed by the reader.
+     */
+    boolean hasImports() {
+        return importsProcessed;
+    }
+}
@@ -16,53 +16,439 @@
  */
 package com.griddynamics.banshun;
 
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.support.BeanDefinitionValidationException;
+import org.springframework.util.Assert;
+
 import java.util.*;
 
+/**
+ * Graph of dependencies between the locations, i.e. which locations export services imported by
+ * other locations.
+ *
+ * <p>The locations are {@link NameInterner interned} into dense integer IDs, so the edges are kept
+ * as adjacency arrays of IDs and transitive closures are computed as bit sets. The reachable set
+ * of each location is computed only once and reused until the graph is changed.</p>
+ *
+ * <p>The graph can be updated incrementally with {@link #addLocation(String, Collection, Collection)}
+ * and {@link #removeLocation(String)}, e.g. when a module is deployed or undeployed at runtime.
+ * Only the changed imports and exports are validated and only the affected locations are ordered,
+ * the rest of the graph is left untouched.</p>
+ */
 public class LocationsGraph {
 
-    private Map<String, HashSet<String>> dependOn = new HashMap<>();
-    private Map<String, HashSet<String>> dependenciesOf = new HashMap<>();
+    private static final int[] NO_IDS = new int[0];
+
+    private final NameInterner locationIds = new NameInterner();
+    private final BitSet present = new BitSet();
+
+    /**
+     * Adjacency arrays indexed by location ID: locations that export services imported by the
+     * location, and locations that import services exported by the location.
+     */
+    private final List<int[]> dependOn = new ArrayList<>();
+    private final List<int[]> dependenciesOf = new ArrayList<>();
+
+    private final Map<String, BeanReferenceInfo> exports = new HashMap<>();
+    private final Map<String, List<BeanReferenceInfo>> imports = new HashMap<>();
+    private final List<List<BeanReferenceInfo>> locationExports = new ArrayList<>();
+    private final List<List<BeanReferenceInfo>> locationImports = new ArrayList<>();
+
+    /**
+     * Memoized reachable locations indexed by location ID, dropped on each change.
+     */
+    private BitSet[] dependOnReach;
+    private BitSet[] dependenciesOfReach;
+
 
     public LocationsGraph(Map<String, List<BeanReferenceInfo>> imports, Map<String, BeanReferenceInfo> exports) {
+        int importsCount = 0;
+        for (BeanReferenceInfo export : exports.values()) {
+            int id = addNode(export.getLocation());
+            this.exports.put(export.getServiceName(), export);
+            locationExports.get(id).add(export);
+        }
+        for (List<BeanReferenceInfo> refInfos : imports.values()) {
+            importsCount += refInfos.size();
+        }
+
+        // edges as (importer << 32 | exporter), so duplicates can be removed by sorting
+        long[] edges = new long[importsCount];
+        int edgesCount = 0;
+
         for (String beanName : imports.keySet()) {
-            String expLoc = exports.get(beanName).getLocation();
+            int exporter = locationIds.idOf(exports.get(beanName).getLocation());
 
-            if (!dependenciesOf.containsKey(expLoc)) {
-                dependenciesOf.put(expLoc, new HashSet<String>());
-            }
             for (BeanReferenceInfo refInfo : imports.get(beanName)) {
-                if (!dependOn.containsKey(refInfo.getLocation())) {
-                    dependOn.put(refInfo.getLocation(), new HashSet<String>());
+                int importer = addNode(refInfo.getLocation());
+                putImport(refInfo);
+                locationImports.get(importer).add(refInfo);
+
+                edges[edgesCount++] = (long) importer << 32 | exporter;
+            }
+        }
+        setEdges(edges);
+    }
+
+    /**
+     * @param location The location to find dependencies for.
+     * @return Locations that export services imported by the given location.
+     */
+    public synchronized Set<String> getDependencies(String location) {
+        if (!containsLocation(location)) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(toNames(dependOn.get(locationIds.idOf(location))));
+    }
+
+    /**
+     * @return Whether the location has been added into this graph, i.e. it imports or exports
+     *         at least one service.
+     */
+    public synchronized boolean containsLocation(String location) {
+        int id = locationIds.idOf(location);
+        return id >= 0 && present.get(id);
+    }
+
+    /**
+     * Adds a new location with its imports and exports into the graph. Only the given references
+     * are validated: the exports must not be exported by another location yet, the imports must be
+     * satisfied either by the existing exports or by the given ones, and the interfaces must be
+     * compatible, including imports of the already added locations that weren't satisfied so far.
+     * The graph is not changed when the validation fails.
+     *
+     * @param location The location to add.
+     * @param locationImports Services imported by the location.
+     * @param locationExports Services exported by the location.
+     * @return The location and all the locations that (transitively) depend on it, dependencies
+     *         first, i.e. the order in which they should be started.
+     * @throws BeanCreationException If the location exports already exported service.
+     * @throws BeanDefinitionValidationException If an import is not satisfied or its interface is
+     *         not compatible with the exported one.
+     */
+    public synchronized List<String> addLocation(String location, Collection<BeanReferenceInfo> locationImports,
+                                                 Collection<BeanReferenceInfo> locationExports) {
+        Assert.isTrue(!containsLocation(location), "Location is already in the graph: " + location);
+
+        Map<String, BeanReferenceInfo> newExports = new HashMap<>();
+        for (BeanReferenceInfo export : locationExports) {
+            BeanReferenceInfo previous = exports.containsKey(export.getServiceName())
+                    ? exports.get(export.getServiceName())
+                    : newExports.get(export.getServiceName());
+            if (previous != null) {
+                throw new BeanCreationException(String.format(
+                        "Double export was defined: %s in context %s. Previous export was in context %s",
+                        export.getServiceName(), location, previous.getLocation()));
+            }
+            newExports.put(export.getServiceName(), export);
+        }
+        for (BeanReferenceInfo importRef : locationImports) {
+            BeanReferenceInfo export = exports.containsKey(importRef.getServiceName())
+                    ? exports.get(importRef.getServiceName())
+                    : newExports.get(importRef.getServiceName());
+            if (export == null) {
+                throw new BeanDefinitionValidationException(String.format(
+                        "Unsatisfied import found in %s: there is no service with name '%s'",
+                        location, importRef.getServiceName()));
+            }
+            checkImportType(importRef, export);
+        }
+        for (BeanReferenceInfo export : newExports.values()) {
+            if (imports.containsKey(export.getServiceName())) {
+                for (BeanReferenceInfo importRef : imports.get(export.getServiceName())) {
+                    checkImportType(importRef, export);
+                }
+            }
+        }
+
+        dropReachability();
+        int id = addNode(location);
+        exports.putAll(newExports);
+        locationExports.get(id).addAll(newExports.values());
+
+        for (BeanReferenceInfo export : newExports.values()) {
+            if (imports.containsKey(export.getServiceName())) {
+                for (BeanReferenceInfo importRef : imports.get(export.getServiceName())) {
+                    addEdge(locationIds.idOf(importRef.getLocation()), id);
                 }
-                dependOn.get(refInfo.getLocation()).add(expLoc);
-                dependenciesOf.get(expLoc).add(refInfo.getLocation());
             }
         }
+        for (BeanReferenceInfo importRef : locationImports) {
+            putImport(importRef);
+            locationImports.get(id).add(importRef);
+            addEdge(id, locationIds.idOf(exports.get(importRef.getServiceName()).getLocation()));
+        }
+
+        return orderAffected(id);
+    }
+
+    /**
+     * Removes the location with its imports and exports from the graph. Imports of the locations
+     * that depend on it are kept, so they are satisfied again when another location that exports
+     * the services is added.
+     *
+     * @param location The location to remove.
+     * @return The location and all the locations that (transitively) depend on it, dependants
+     *         first, i.e. the order in which they should be stopped.
+     */
+    public synchronized List<String> removeLocation(String location) {
+        if (!containsLocation(location)) {
+            return Collections.emptyList();
+        }
+        int id = locationIds.idOf(location);
+
+        List<String> stopOrder = orderAffected(id);
+        Collections.reverse(stopOrder);
+
+        dropReachability();
+        present.clear(id);
+
+        for (BeanReferenceInfo export : locationExports.get(id)) {
+            exports.remove(export.getServiceName());
+        }
+        for (BeanReferenceInfo importRef : locationImports.get(id)) {
+            List<BeanReferenceInfo> refs = imports.get(importRef.getServiceName());
+            refs.remove(importRef);
+            if (refs.isEmpty()) {
+                imports.remove(importRef.getServiceName());
+            }
+        }
+        locationExports.get(id).clear();
+        locationImports.get(id).clear();
+
+        for (int exporter : dependOn.get(id)) {
+            dependenciesOf.set(exporter, without(dependenciesOf.get(exporter), id));
+        }
+        for (int importer : dependenciesOf.get(id)) {
+            dependOn.set(importer, without(dependOn.get(importer), id));
+        }
+        dependOn.set(id, NO_IDS);
+        dependenciesOf.set(id, NO_IDS);
+
+        return stopOrder;
     }
 
-    public List<String> filterConfigLocations(List<String> limitedLocations, String[] allLocations) {
-        Set<String> marked = new HashSet<>();
+    public synchronized List<String> filterConfigLocations(List<String> limitedLocations, String[] allLocations) {
         List<String> resultLocationList = new ArrayList<>(Arrays.asList(allLocations));
 
         if (!limitedLocations.isEmpty()) {
-            for (String loc : limitedLocations) {
-                transitiveClosure(loc, marked, true);
-            }
-            resultLocationList.retainAll(marked);
+            resultLocationList.retainAll(transitiveClosure(limitedLocations, true));
         }
         return resultLocationList;
     }
 
-    public void transitiveClosure(String loc, Set<String> marked, boolean isDependsOnMode) {
-        marked.add(loc);
-        Map<String, HashSet<String>> locationDependencies = isDependsOnMode ? dependOn : dependenciesOf;
+    /**
+     * Adds the location and all the locations reachable from it into the given set.
+     *
+     * @param loc The location to start from.
+     * @param marked The set to add the locations into.
+     * @param isDependsOnMode Whether to follow dependencies of the locations (<tt>true</tt>),
+     *                        or the locations that depend on them (<tt>false</tt>).
+     */
+    public synchronized void transitiveClosure(String loc, Set<String> marked, boolean isDependsOnMode) {
+        marked.addAll(transitiveClosure(Collections.singleton(loc), isDependsOnMode));
+    }
+
+    /**
+     * Same as {@link #transitiveClosure(String, Set, boolean)}, but for multiple locations at once.
+     *
+     * @return The given locations and all the locations reachable from them, in the order in
+     *         which they have been first added into the graph.
+     */
+    public synchronized Set<String> transitiveClosure(Collection<String> locs, boolean isDependsOnMode) {
+        BitSet reached = new BitSet(locationIds.size());
+        Set<String> result = new LinkedHashSet<>();
 
-        if (locationDependencies.containsKey(loc)) {
-            for (String dependsOn : locationDependencies.get(loc)) {
-                if (!marked.contains(dependsOn)) {
-                    transitiveClosure(dependsOn, marked, isDependsOnMode);
+        for (String loc : locs) {
+            if (containsLocation(loc)) {
+                reached.or(reachable(locationIds.idOf(loc), isDependsOnMode));
+            } else {
+                result.add(loc);
+            }
+        }
+        for (int id = reached.nextSetBit(0); id >= 0; id = reached.nextSetBit(id + 1)) {
+            result.add(locationIds.nameOf(id));
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The locations reachable from the given one, including itself. The returned set
+     *         must not be modified.
+     */
+    private BitSet reachable(int id, boolean isDependsOnMode) {
+        if (dependOnReach == null) {
+            dependOnReach = new BitSet[locationIds.size()];
+            dependenciesOfReach = new BitSet[locationIds.size()];
+        }
+        List<int[]> adjacency = isDependsOnMode ? dependOn : dependenciesOf;
+        BitSet[] memo = isDependsOnMode ? dependOnReach : dependenciesOfReach;
+
+        if (memo[id] != null) {
+            return memo[id];
+        }
+        BitSet reached = new BitSet(locationIds.size());
+        int[] stack = new int[locationIds.size()];
+        int top = 0;
+
+        reached.set(id);
+        stack[top++] = id;
+
+        while (top > 0) {
+            for (int next : adjacency.get(stack[--top])) {
+                if (reached.get(next)) {
+                    continue;
+                }
+                if (memo[next] != null) {
+                    reached.or(memo[next]);
+                } else {
+                    reached.set(next);
+                    stack[top++] = next;
+                }
+            }
+        }
+        memo[id] = reached;
+        return reached;
+    }
+
+    private void dropReachability() {
+        dependOnReach = null;
+        dependenciesOfReach = null;
+    }
+
+    /**
+     * @return The location and the locations that depend on it, ordered so that each location
+     *         follows the locations it depends on (unless they form a cycle).
+     */
+    private List<String> orderAffected(int id) {
+        BitSet affected = reachable(id, false);
+        BitSet visited = new BitSet(locationIds.size());
+        List<String> result = new ArrayList<>(affected.cardinality());
+
+        // iterative post-order DFS over the dependencies, restricted to the affected locations
+        int[] stack = new int[locationIds.size()];
+        int[] cursor = new int[locationIds.size()];
+
+        for (int start = affected.nextSetBit(0); start >= 0; start = affected.nextSetBit(start + 1)) {
+            if (visited.get(start)) {
+                continue;
+            }
+            int top = 0;
+            visited.set(start);
+            cursor[start] = 0;
+            stack[top++] = start;
+
+            while (top > 0) {
+                int current = stack[top - 1];
+                int[] dependencies = dependOn.get(current);
+
+                if (cursor[current] < dependencies.length) {
+                    int next = dependencies[cursor[current]++];
+                    if (affected.get(next) && !visited.get(next)) {
+                        visited.set(next);
+                        cursor[next] = 0;
+                        stack[top++] = next;
+                    }
+                } else {
+                    top--;
+                    result.add(locationIds.nameOf(current));
                 }
             }
         }
+        return result;
+    }
+
+    private int addNode(String location) {
+        int id = locationIds.intern(location);
+        if (id == dependOn.size()) {
+            dependOn.add(NO_IDS);
+            dependenciesOf.add(NO_IDS);
+            locationExports.add(new ArrayList<BeanReferenceInfo>());
+            locationImports.add(new ArrayList<BeanReferenceInfo>());
+        }
+        present.set(id);
+        return id;
+    }
+
+    /**
+     * Fills the adjacency arrays from the edges encoded as <tt>importer &lt;&lt; 32 | exporter</tt>.
+     */
+    private void setEdges(long[] edges) {
+        Arrays.sort(edges);
+        int[] outDegrees = new int[locationIds.size()];
+        int[] inDegrees = new int[locationIds.size()];
+        int unique = 0;
+
+        for (int i = 0; i < edges.length; i++) {
+            if (i == 0 || edges[i] != edges[i - 1]) {
+                edges[unique++] = edges[i];
+                outDegrees[(int) (edges[i] >>> 32)]++;
+                inDegrees[(int) edges[i]]++;
+            }
+        }
+        for (int id = 0; id < locationIds.size(); id++) {
+            dependOn.set(id, outDegrees[id] > 0 ? new int[outDegrees[id]] : NO_IDS);
+            dependenciesOf.set(id, inDegrees[id] > 0 ? new int[inDegrees[id]] : NO_IDS);
+            outDegrees[id] = inDegrees[id] = 0;
+        }
+        for (int i = 0; i < unique; i++) {
+            int importer = (int) (edges[i] >>> 32);
+            int exporter = (int) edges[i];
+            dependOn.get(importer)[outDegrees[importer]++] = exporter;
+            dependenciesOf.get(exporter)[inDegrees[exporter]++] = importer;
+        }
+    }
+
+    private void addEdge(int importer, int exporter) {
+        int[] dependencies = dependOn.get(importer);
+        for (int id : dependencies) {
+            if (id == exporter) {
+                return;
+            }
+        }
+        dependOn.set(importer, append(dependencies, exporter));
+        dependenciesOf.set(exporter, append(dependenciesOf.get(exporter), importer));
+    }
+
+    private static int[] append(int[] ids, int id) {
+        int[] result = Arrays.copyOf(ids, ids.length + 1);
+        result[ids.length] = id;
+        return result;
+    }
+
+    private static int[] without(int[] ids, int id) {
+        int[] result = new int[ids.length];
+        int count = 0;
+        for (int current : ids) {
+            if (current != id) {
+                result[count++] = current;
+            }
+        }
+        return count > 0 ? Arrays.copyOf(result, count) : NO_IDS;
+    }
+
+    private Set<String> toNames(int[] ids) {
+        Set<String> result = new LinkedHashSet<>(ids.length * 2);
+        for (int id : ids) {
+            result.add(locationIds.nameOf(id));
+        }
+        return result;
+    }
+
+    private void checkImportType(BeanReferenceInfo importRef, BeanReferenceInfo export) {
+        if (!importRef.getServiceInterface().isAssignableFrom(export.getServiceInterface())) {
+            throw new BeanDefinitionValidationException(String.format(
+                    "Imported bean %s from location %s must implement same interface that appropriate " +
+                    "exported bean %s or subinterface but no superclass or superinterface",
+                    importRef.getServiceName(), importRef.getLocation(), export.getServiceName()));
+        }
+    }
+
+    private void putImport(BeanReferenceInfo importRef) {
+        if (!imports.containsKey(importRef.getServiceName())) {
+            imports.put(importRef.getServiceName(), new ArrayList<BeanReferenceInfo>());
+        }
+        imports.get(importRef.getServiceName()).add(importRef);
     }
 }
@@ -20,36 +20,52 @@ package com.griddynamics.banshun;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
-import org.apache.commons.lang3.builder.ToStringBuilder;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.springframework.aop.TargetSource;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanNotOfRequiredTypeException;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.context.ApplicationContext;
 
-import java.util.concurrent.atomic.AtomicReference;
-
 import static org.apache.commons.lang3.builder.ToStringStyle.SHORT_PREFIX_STYLE;
 
+/**
+ * Target source of an imported service. It resolves the {@link ExportTargetSource} of the service
+ * only once and then delegates to it, so all imports of the same service share the single target
+ * cached by the export.
+ */
 public class LookupTargetSource implements TargetSource {
 
-    private static final Logger log = LoggerFactory.getLogger(LookupTargetSource.class);
+    private static final String[] EXCLUDED_FIELDS = { "exportTargetSource", "registry" };
 
-    private AtomicReference<Object> target = new AtomicReference<>();
+    private volatile ExportTargetSource exportTargetSource;
 
     private final String serviceName;
     private final Class<?> serviceInterface;
     private final String exportProxyName;
     private final ApplicationContext rootContext;
+    private final ContextParentBean registry;
 
 
     public LookupTargetSource(String serviceName, Class<?> serviceInterface, String exportProxyName, ApplicationContext rootContext) {
+        this(serviceName, serviceInterface, exportProxyName, rootContext, null);
+    }
+
+    /**
+     * @param registry The registry to find the exported service in, see
+     *                 {@link ContextParentBean#findExportTargetSource(String)}. When the service is
+     *                 not found there, it's looked up in the root context by the
+     *                 <tt>exportProxyName</tt>, or awaited (see
+     *                 {@link ContextParentBean#awaitExportTargetSource(String)}) if not found at
+     *                 all. May be <tt>null</tt>.
+     */
+    LookupTargetSource(String serviceName, Class<?> serviceInterface, String exportProxyName,
+                       ApplicationContext rootContext, ContextParentBean registry) {
         this.serviceName = serviceName;
         this.serviceInterface = serviceInterface;
         this.exportProxyName = exportProxyName;
         this.rootContext = rootContext;
+        this.registry = registry;
     }
 
 
@@ -65,44 +81,50 @@ public class LookupTargetSource implements TargetSource {
     }
 
     public Object getTarget() throws BeansException {
-        Object localTarget = target.get();
+        ExportTargetSource localExport = exportTargetSource;
 
-        if (localTarget == null) {
-            if (!rootContext.containsBean(exportProxyName)) {
-                throw new NoSuchBeanDefinitionException(exportProxyName, String.format(
-                        "can't find export declaration for lookup(%s, %s)", serviceName, serviceInterface));
-            }
-            ExportTargetSource exportProxy = rootContext.getBean(exportProxyName, ExportTargetSource.class);
-
-            // verify if service interfaces on both sides are compatible
-            if (!serviceInterface.isAssignableFrom(exportProxy.getTargetClass())) {
-                throw new BeanNotOfRequiredTypeException(serviceName, serviceInterface, exportProxy.getTargetClass());
-            }
-
-            if (target.compareAndSet(null, localTarget = exportProxy.getTarget())) {
-                return localTarget;
-
-            } else {
-                // log potentially redundant instance initialization
-                log.warn("Bean {} was created earlier", serviceName);
-                return target.get();
-            }
+        if (localExport == null) {
+            // concurrent resolution is harmless, all threads get the same instance
+            exportTargetSource = localExport = resolveExportTargetSource();
         }
-        return localTarget;
+        return localExport.getTarget();
     }
 
     @Override
     public String toString() {
-        return ToStringBuilder.reflectionToString(this, SHORT_PREFIX_STYLE);
+        return new ReflectionToStringBuilder(this, SHORT_PREFIX_STYLE).setExcludeFieldNames(EXCLUDED_FIELDS).toString();
     }
 
     @Override
     public boolean equals(Object obj) {
-        return EqualsBuilder.reflectionEquals(this, obj, "target");
+        return EqualsBuilder.reflectionEquals(this, obj, EXCLUDED_FIELDS);
     }
 
     @Override
     public int hashCode() {
-        return HashCodeBuilder.reflectionHashCode(this, "target");
+        return HashCodeBuilder.reflectionHashCode(this, EXCLUDED_FIELDS);
+    }
+
+
+    private ExportTargetSource resolveExportTargetSource() {
+        ExportTargetSource exportProxy = registry != null ? registry.findExportTargetSource(serviceName) : null;
+
+        if (exportProxy == null && registry != null && !rootContext.containsBean(exportProxyName)) {
+            // the exporting context may be still starting
+            exportProxy = registry.awaitExportTargetSource(serviceName);
+        }
+        if (exportProxy == null) {
+            if (!rootContext.containsBean(exportProxyName)) {
+                throw new NoSuchBeanDefinitionException(exportProxyName, String.format(
+                        "can't find export declaration for lookup(%s, %s)", serviceName, serviceInterface));
+            }
+            exportProxy = rootContext.getBean(exportProxyName, ExportTargetSource.class);
+        }
+
+        // verify if service interfaces on both sides are compatible
+        if (!serviceInterface.isAssignableFrom(exportProxy.getTargetClass())) {
+            throw new BeanNotOfRequiredTypeException(serviceName, serviceInterface, exportProxy.getTargetClass());
+        }
+        return exportProxy;
     }
 }
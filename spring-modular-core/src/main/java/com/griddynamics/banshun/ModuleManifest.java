@@ -0,0 +1,255 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun;
+
+import com.griddynamics.banshun.config.xml.ParserUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
+import org.springframework.beans.factory.xml.BeanDefinitionParserDelegate;
+import org.springframework.beans.factory.xml.DefaultBeanDefinitionDocumentReader;
+import org.springframework.beans.factory.xml.DefaultDocumentLoader;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.StringUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Manifest of imports and exports of a single module, i.e. a context XML, generated at build
+ * time. It's a properties file stored next to the XML with the {@link #FILE_SUFFIX suffix}:
+ *
+ * <pre>
+ * checksum=md5:...
+ * exports=serviceName:com.example.ServiceInterface,...
+ * imports=serviceName:com.example.ServiceInterface,...
+ * profiles=
+ * </pre>
+ *
+ * <p>When {@link StrictContextParentBean#setUseModuleManifests(boolean) enabled}, the dependency
+ * analysis reads the manifest instead of parsing the XML. The manifest is used only when the
+ * checksum matches content of the XML, so an outdated manifest is just ignored. The XML is still
+ * read to compute the checksum; that's much cheaper than parsing it, and unlike the modification
+ * time, the content survives packaging and deployment unchanged.</p>
+ *
+ * <p>The checksum covers only the XML itself, not the resources it imports via
+ * <tt>&lt;import&gt;</tt>; a change of an imported resource would not be detected. Therefore no
+ * manifest is generated for an XML with imports and such XML is always parsed. Adding an import
+ * to an XML changes its checksum, so its old manifest is ignored too.</p>
+ *
+ * <p>Imports and exports of an XML with profile specific <tt>&lt;beans&gt;</tt> depend on the
+ * profiles of the root context, so they cannot be determined at build time. The manifest of such
+ * XML lists the profiles and it's never used; the XML is parsed instead.</p>
+ *
+ * <p>The manifests are generated by the {@link #main(String[]) main} method, e.g. with the
+ * <tt>exec-maven-plugin</tt> in the <tt>process-classes</tt> phase, so they're packaged into the
+ * module's jar together with the XMLs.</p>
+ */
+public final class ModuleManifest {
+
+    private static final Logger log = LoggerFactory.getLogger(ModuleManifest.class);
+
+    public static final String FILE_SUFFIX = ".banshun";
+
+    private static final String CHECKSUM_KEY = "checksum";
+    private static final String EXPORTS_KEY = "exports";
+    private static final String IMPORTS_KEY = "imports";
+    private static final String PROFILES_KEY = "profiles";
+
+    private ModuleManifest() {
+    }
+
+
+    /**
+     * Generates manifests of the XMLs in the given directory.
+     *
+     * @param args The base directory (e.g. <tt>target/classes</tt>), followed by one or more
+     *             location patterns of the XMLs relative to it (e.g. <tt>META-INF/spring/*.xml</tt>).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ModuleManifest <base directory> <location pattern>...");
+            System.exit(1);
+        }
+        int count = generate(new File(args[0]), Arrays.copyOfRange(args, 1, args.length));
+        log.info("Generated {} module manifests in {}", count, args[0]);
+    }
+
+    /**
+     * Parses the XMLs that match the patterns and writes a manifest next to each of them, except
+     * the ones that import other resources; their outdated manifests are deleted.
+     *
+     * @param baseDir The directory to resolve the patterns in.
+     * @param patterns The location patterns relative to the base directory.
+     * @return Number of the generated manifests.
+     */
+    public static int generate(File baseDir, String... patterns) throws IOException {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        int count = 0;
+
+        for (String pattern : patterns) {
+            for (Resource xml : resolver.getResources(baseDir.toURI().toString() + pattern)) {
+                Properties manifest = createManifest(xml);
+                File file = new File(xml.getFile().getPath() + FILE_SUFFIX);
+
+                if (manifest == null) {
+                    log.info("Skipping {}, it imports other resources", xml.getFilename());
+                    if (file.exists() && !file.delete()) {
+                        throw new IOException("Cannot delete outdated manifest " + file);
+                    }
+                    continue;
+                }
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                    manifest.store(out, "Banshun module manifest of " + xml.getFilename());
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Reads manifest of the given XML.
+     *
+     * @param xml The resource of the context XML.
+     * @param location The resolved location of the XML.
+     * @param fingerprint The fingerprint to create the entry with, see {@link AnalysisCache}.
+     * @return References from the manifest, or <tt>null</tt> if there's no manifest for the XML,
+     *         it's outdated, or it depends on profiles.
+     */
+    static AnalysisCache.Entry load(Resource xml, String location, String fingerprint) {
+        try {
+            Resource manifestResource = xml.createRelative(xml.getFilename() + FILE_SUFFIX);
+            if (!manifestResource.exists()) {
+                return null;
+            }
+            Properties manifest = PropertiesLoaderUtils.loadProperties(manifestResource);
+
+            if (StringUtils.hasLength(manifest.getProperty(PROFILES_KEY))) {
+                log.debug("Manifest of {} depends on profiles {}, ignoring it", location, manifest.getProperty(PROFILES_KEY));
+                return null;
+            }
+            if (!checksum(xml).equals(manifest.getProperty(CHECKSUM_KEY))) {
+                log.debug("Manifest of {} is outdated, ignoring it", location);
+                return null;
+            }
+            return new AnalysisCache.Entry(fingerprint, location,
+                    parseReferences(manifest.getProperty(IMPORTS_KEY)), parseReferences(manifest.getProperty(EXPORTS_KEY)));
+
+        } catch (IOException ex) {
+            log.warn("Failed to read manifest of {}, ignoring it", location, ex);
+            return null;
+        }
+    }
+
+    /**
+     * @return The manifest, or <tt>null</tt> if the XML imports other resources.
+     */
+    static Properties createManifest(Resource xml) throws IOException {
+        ProfilesCollectingDocumentLoader documentLoader = new ProfilesCollectingDocumentLoader();
+        ImportsDetectingListener importsListener = new ImportsDetectingListener();
+        XmlBeanDefinitionReader reader = new XmlBeanDefinitionReader(new SimpleBeanDefinitionRegistry());
+        reader.setDocumentLoader(documentLoader);
+        reader.setEventListener(importsListener);
+        reader.loadBeanDefinitions(xml);
+        BeanDefinitionRegistry registry = reader.getRegistry();
+
+        if (importsListener.hasImports()) {
+            return null;
+        }
+        // sorted, so the same XML always gives the same manifest
+        Set<String> exports = new TreeSet<>();
+        Set<String> imports = new TreeSet<>();
+
+        for (String beanName : registry.getBeanDefinitionNames()) {
+            BeanDefinition beanDefinition = registry.getBeanDefinition(beanName);
+
+            if (beanDefinition.hasAttribute(ParserUtils.EXPORT_BEAN_DEF_ATTR_NAME)) {
+                exports.add(formatReference(beanDefinition.getAttribute(ParserUtils.EXPORT_BEAN_DEF_ATTR_NAME)));
+
+            } else if (beanDefinition.hasAttribute(ParserUtils.IMPORT_BEAN_DEF_ATTR_NAME)) {
+                imports.add(formatReference(beanDefinition.getAttribute(ParserUtils.IMPORT_BEAN_DEF_ATTR_NAME)));
+            }
+        }
+        Properties manifest = new Properties();
+        manifest.setProperty(CHECKSUM_KEY, checksum(xml));
+        manifest.setProperty(EXPORTS_KEY, StringUtils.collectionToCommaDelimitedString(exports));
+        manifest.setProperty(IMPORTS_KEY, StringUtils.collectionToCommaDelimitedString(imports));
+        manifest.setProperty(PROFILES_KEY, StringUtils.collectionToCommaDelimitedString(documentLoader.profiles));
+
+        return manifest;
+    }
+
+
+    private static String checksum(Resource xml) throws IOException {
+        return AnalysisCache.fingerprint(xml, true);
+    }
+
+    private static String formatReference(Object attribute) {
+        BeanReferenceInfo reference = (BeanReferenceInfo) attribute;
+        return reference.getServiceName() + ':' + reference.getServiceInterface().getName();
+    }
+
+    private static List<String[]> parseReferences(String value) throws IOException {
+        List<String[]> result = new ArrayList<>();
+
+        for (String reference : StringUtils.commaDelimitedListToStringArray(value)) {
+            int separator = reference.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IOException("Malformed reference in module manifest: " + reference);
+            }
+            result.add(new String[]{ reference.substring(0, separator), reference.substring(separator + 1) });
+        }
+        return result;
+    }
+
+
+    /**
+     * Document loader that collects the profiles of all <tt>&lt;beans&gt;</tt> elements in the
+     * loaded documents.
+     */
+    private static class ProfilesCollectingDocumentLoader extends DefaultDocumentLoader {
+
+        final Set<String> profiles = new TreeSet<>();
+
+        @Override
+        public Document loadDocument(InputSource inputSource, EntityResolver entityResolver, ErrorHandler errorHandler,
+                                     int validationMode, boolean namespaceAware) throws Exception {
+            Document document = super.loadDocument(inputSource, entityResolver, errorHandler, validationMode, namespaceAware);
+            NodeList beansElements = document.getElementsByTagNameNS(BeanDefinitionParserDelegate.BEANS_NAMESPACE_URI,
+                    DefaultBeanDefinitionDocumentReader.NESTED_BEANS_ELEMENT);
+
+            for (int i = 0; i < beansElements.getLength(); i++) {
+                String profile = ((Element) beansElements.item(i)).getAttribute(DefaultBeanDefinitionDocumentReader.PROFILE_ATTRIBUTE);
+                profiles.addAll(Arrays.asList(StringUtils.tokenizeToStringArray(
+                        profile, BeanDefinitionParserDelegate.MULTI_VALUE_ATTRIBUTE_DELIMITERS)));
+            }
+            return document;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns dense integer IDs (0, 1, 2...) to names, e.g. locations or services, in the order in
+ * which they're interned. Each name is hashed only when it's interned or looked up, the rest of
+ * the graph algorithms work with the IDs in primitive arrays and bit sets.
+ */
+final class NameInterner {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+
+    /**
+     * @return ID of the name, a new one if the name hasn't been interned yet.
+     */
+    int intern(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    /**
+     * @return ID of the name, or -1 if the name hasn't been interned.
+     */
+    int idOf(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    String nameOf(int id) {
+        return names.get(id);
+    }
+
+    int size() {
+        return names.size();
+    }
+}
@@ -16,6 +16,8 @@
  */
 package com.griddynamics.banshun;
 
+import java.util.concurrent.Future;
+
 /**
  * Registry for exported and imported services by name with a constraint by
  * an interface.
@@ -42,4 +44,13 @@ public interface Registry {
      * @return A proxy of the requested service.
      */
     <T> T lookup(final String name, final Class<T> clazz);
+
+    /**
+     * Imports a service by the name without waiting for its export.
+     *
+     * @param name  The key to find a service with. It's usually camelCase name used during export.
+     * @param clazz The expected interface for the service. It should match with the interface used during an export.
+     * @return A future of the proxy of the requested service that is done when the service is exported.
+     */
+    <T> Future<T> lookupAsync(final String name, final Class<T> clazz);
 }
@@ -17,6 +17,8 @@
 package com.griddynamics.banshun;
 
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
@@ -27,15 +29,69 @@ import java.io.IOException;
 public final class SingleResourceXmlChildContext extends ClassPathXmlApplicationContext {
 
     private Resource resource;
+    private BeanDefinitionRegistry parsedDefinitions;
+    private long parseNanos;
+    private long singletonsNanos;
 
     public SingleResourceXmlChildContext(Resource resource, ApplicationContext parent) {
+        this(resource, null, parent);
+    }
+
+    /**
+     * @param resource The XML resource with bean definitions.
+     * @param parsedDefinitions Bean definitions already parsed from the resource, or <tt>null</tt>.
+     *                          If given, they are registered into this context instead of parsing
+     *                          the resource again.
+     * @param parent The parent context.
+     */
+    public SingleResourceXmlChildContext(Resource resource, BeanDefinitionRegistry parsedDefinitions, ApplicationContext parent) {
         this.resource = resource;
+        this.parsedDefinitions = parsedDefinitions;
         setParent(parent);
         refresh();
     }
 
+    /**
+     * @return Time spent loading bean definitions during the last refresh.
+     */
+    long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * @return Time spent instantiating non-lazy singletons during the last refresh.
+     */
+    long getSingletonsNanos() {
+        return singletonsNanos;
+    }
+
     @Override
     protected void loadBeanDefinitions(XmlBeanDefinitionReader reader) throws BeansException, IOException {
-        reader.loadBeanDefinitions(resource);
+        long start = System.nanoTime();
+
+        if (parsedDefinitions != null) {
+            copyBeanDefinitions(parsedDefinitions, reader.getRegistry());
+            parsedDefinitions = null; // on the next refresh parse the resource again
+        } else {
+            reader.loadBeanDefinitions(resource);
+        }
+        parseNanos = System.nanoTime() - start;
+    }
+
+    @Override
+    protected void finishBeanFactoryInitialization(ConfigurableListableBeanFactory beanFactory) {
+        long start = System.nanoTime();
+        super.finishBeanFactoryInitialization(beanFactory);
+        singletonsNanos = System.nanoTime() - start;
+    }
+
+    private void copyBeanDefinitions(BeanDefinitionRegistry source, BeanDefinitionRegistry target) {
+        for (String beanName : source.getBeanDefinitionNames()) {
+            target.registerBeanDefinition(beanName, source.getBeanDefinition(beanName));
+
+            for (String alias : source.getAliases(beanName)) {
+                target.registerAlias(beanName, alias);
+            }
+        }
     }
 }
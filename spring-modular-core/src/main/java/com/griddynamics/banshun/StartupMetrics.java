@@ -0,0 +1,301 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings of the startup phases of {@link ContextParentBean} and of each child context.
+ *
+ * <p>The critical path is the chain of dependent locations with the longest total time. It's the
+ * lower bound of the children initialization when independent contexts are initialized
+ * concurrently.</p>
+ */
+public class StartupMetrics implements StartupMetricsMBean {
+
+    private final ConcurrentMap<String, LocationTimings> locations = new ConcurrentHashMap<>();
+
+    private volatile long resolveNanos;
+    private volatile long analysisNanos;
+    private volatile long sortNanos;
+    private volatile long childrenNanos;
+    private volatile long warmupNanos = -1;
+    private volatile List<String> criticalPath = Collections.emptyList();
+
+
+    public long getResolveMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(resolveNanos);
+    }
+
+    public long getAnalysisMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(analysisNanos);
+    }
+
+    public long getSortMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(sortNanos);
+    }
+
+    public long getChildrenMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(childrenNanos);
+    }
+
+    public long getWarmupMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(Math.max(warmupNanos, 0));
+    }
+
+    public int getLocationsCount() {
+        return locations.size();
+    }
+
+    public long getClassCacheHitCount() {
+        return ClassResolutionCache.getSharedInstance().getHitCount();
+    }
+
+    public long getClassCacheMissCount() {
+        return ClassResolutionCache.getSharedInstance().getMissCount();
+    }
+
+    /**
+     * @return Timings of the given location, or <tt>null</tt> if it hasn't been initialized yet.
+     *         A failed location has timings too.
+     */
+    public LocationTimings getLocationTimings(String location) {
+        return locations.get(location);
+    }
+
+    /**
+     * @return Locations on the critical path in the order of initialization.
+     */
+    public List<String> getCriticalPath() {
+        return criticalPath;
+    }
+
+    public String getStartupReport() {
+        List<Map.Entry<String, LocationTimings>> entries = new ArrayList<>(locations.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, LocationTimings>>() {
+            public int compare(Map.Entry<String, LocationTimings> o1, Map.Entry<String, LocationTimings> o2) {
+                return Long.compare(o2.getValue().getTotalNanos(), o1.getValue().getTotalNanos());
+            }
+        });
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Startup of %d locations took %s ms " +
+                        "(resolving locations %s ms, analysis %s ms including sorting %s ms), warm-up %s ms%n",
+                entries.size(), millis(childrenNanos), millis(resolveNanos), millis(analysisNanos), millis(sortNanos),
+                millis(warmupNanos)));
+        report.append(String.format("%10s %10s %10s %10s %10s  %s%n",
+                "resolve", "refresh", "parse", "singletons", "total", "location"));
+
+        for (Map.Entry<String, LocationTimings> entry : entries) {
+            LocationTimings timings = entry.getValue();
+            report.append(String.format("%10s %10s %10s %10s %10s  %s%n",
+                    millis(timings.getResolveNanos()), millis(timings.getRefreshNanos()), millis(timings.getParseNanos()),
+                    millis(timings.getSingletonsNanos()), millis(timings.getTotalNanos()), entry.getKey()));
+        }
+        return report.toString();
+    }
+
+    public String getCriticalPathReport() {
+        List<String> path = criticalPath;
+        long total = 0;
+        for (String location : path) {
+            total += locations.get(location).getTotalNanos();
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Critical path of %d child contexts takes %s ms%n", path.size(), millis(total)));
+
+        for (String location : path) {
+            report.append(String.format("%10s  %s%n", millis(locations.get(location).getTotalNanos()), location));
+        }
+        return report.toString();
+    }
+
+
+    void setResolveNanos(long resolveNanos) {
+        this.resolveNanos = resolveNanos;
+    }
+
+    void setAnalysisNanos(long analysisNanos) {
+        this.analysisNanos = analysisNanos;
+    }
+
+    void setSortNanos(long sortNanos) {
+        this.sortNanos = sortNanos;
+    }
+
+    void setChildrenNanos(long childrenNanos) {
+        this.childrenNanos = childrenNanos;
+    }
+
+    void setWarmupNanos(long warmupNanos) {
+        this.warmupNanos = warmupNanos;
+    }
+
+    /**
+     * @return Timings of the given location, created if it doesn't exist yet.
+     */
+    LocationTimings location(String location) {
+        LocationTimings timings = locations.get(location);
+
+        if (timings == null) {
+            LocationTimings created = new LocationTimings();
+            timings = locations.putIfAbsent(location, created);
+            if (timings == null) {
+                timings = created;
+            }
+        }
+        return timings;
+    }
+
+    /**
+     * Finds the critical path through the initialized locations.
+     *
+     * @param orderedLocations All locations in the order of initialization.
+     * @param dependencies Locations that must be initialized before the key location. Only those
+     *                     that precede it in <tt>orderedLocations</tt> are taken into account.
+     */
+    void computeCriticalPath(List<String> orderedLocations, Map<String, ? extends Collection<String>> dependencies) {
+        Map<String, Long> finishTimes = new HashMap<>();
+        Map<String, String> predecessors = new HashMap<>();
+        String last = null;
+
+        for (String location : orderedLocations) {
+            LocationTimings timings = locations.get(location);
+            if (timings == null) {
+                continue;
+            }
+            long start = 0;
+            String predecessor = null;
+
+            Collection<String> dependsOn = dependencies.get(location);
+            if (dependsOn != null) {
+                for (String dependency : dependsOn) {
+                    Long finish = finishTimes.get(dependency);
+                    if (finish != null && finish > start) {
+                        start = finish;
+                        predecessor = dependency;
+                    }
+                }
+            }
+            long finish = start + timings.getTotalNanos();
+            finishTimes.put(location, finish);
+            predecessors.put(location, predecessor);
+
+            if (last == null || finish > finishTimes.get(last)) {
+                last = location;
+            }
+        }
+
+        LinkedList<String> path = new LinkedList<>();
+        for (String location = last; location != null; location = predecessors.get(location)) {
+            path.addFirst(location);
+        }
+        criticalPath = Collections.unmodifiableList(path);
+    }
+
+
+    private static String millis(long nanos) {
+        return nanos < 0 ? "-" : String.format(Locale.ROOT, "%.1f", nanos / 1e6);
+    }
+
+
+    /**
+     * Timings of a single location, summed over all its resources. Phases that cannot be measured
+     * for the used type of child context are <tt>-1</tt>.
+     */
+    public static class LocationTimings {
+
+        private long resolveNanos;
+        private long refreshNanos;
+        private long parseNanos = -1;
+        private long singletonsNanos = -1;
+        private long totalNanos;
+        private long warmupNanos = -1;
+
+
+        /**
+         * @return Time spent resolving resources of the location.
+         */
+        public synchronized long getResolveNanos() {
+            return resolveNanos;
+        }
+
+        /**
+         * @return Time spent creating and refreshing the child contexts.
+         */
+        public synchronized long getRefreshNanos() {
+            return refreshNanos;
+        }
+
+        /**
+         * @return Time spent loading bean definitions, including parsing during the dependency
+         *         analysis when the child contexts reuse its results. The latter is not part of
+         *         the refresh and total time.
+         */
+        public synchronized long getParseNanos() {
+            return parseNanos;
+        }
+
+        /**
+         * @return Time spent instantiating non-lazy singletons.
+         */
+        public synchronized long getSingletonsNanos() {
+            return singletonsNanos;
+        }
+
+        /**
+         * @return Total time spent on the location, i.e. resolving and creating the child contexts.
+         */
+        public synchronized long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return Time spent warming up the exported services after startup; not included in
+         *         the total time.
+         */
+        public synchronized long getWarmupNanos() {
+            return warmupNanos;
+        }
+
+
+        synchronized void addResolve(long nanos) {
+            resolveNanos += nanos;
+            totalNanos += nanos;
+        }
+
+        synchronized void addRefresh(long nanos) {
+            refreshNanos += nanos;
+            totalNanos += nanos;
+        }
+
+        synchronized void addParse(long nanos) {
+            parseNanos = Math.max(parseNanos, 0) + nanos;
+        }
+
+        synchronized void addSingletons(long nanos) {
+            singletonsNanos = Math.max(singletonsNanos, 0) + nanos;
+        }
+
+        synchronized void addWarmup(long nanos) {
+            warmupNanos = Math.max(warmupNanos, 0) + nanos;
+        }
+    }
+}
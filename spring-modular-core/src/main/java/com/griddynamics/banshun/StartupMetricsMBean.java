@@ -0,0 +1,73 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun;
+
+/**
+ * Management interface of {@link StartupMetrics}. All times are in milliseconds.
+ */
+public interface StartupMetricsMBean {
+
+    /**
+     * @return Time spent resolving and excluding the config locations.
+     */
+    long getResolveMillis();
+
+    /**
+     * @return Time spent analyzing dependencies of the locations, including sorting.
+     */
+    long getAnalysisMillis();
+
+    /**
+     * @return Time spent sorting the locations.
+     */
+    long getSortMillis();
+
+    /**
+     * @return Time spent initializing all the child contexts.
+     */
+    long getChildrenMillis();
+
+    /**
+     * @return Time spent warming up the exported services, 0 if the warm-up is disabled.
+     */
+    long getWarmupMillis();
+
+    /**
+     * @return Number of locations with recorded timings, i.e. whose child contexts have been
+     *         initialized, including the ones that failed.
+     */
+    int getLocationsCount();
+
+    /**
+     * @return Number of class resolutions served from the shared {@link ClassResolutionCache}.
+     */
+    long getClassCacheHitCount();
+
+    /**
+     * @return Number of class resolutions that missed the shared {@link ClassResolutionCache}.
+     */
+    long getClassCacheMissCount();
+
+    /**
+     * @return Human readable table of timings per location, the slowest first.
+     */
+    String getStartupReport();
+
+    /**
+     * @return Human readable list of the locations on the critical path.
+     */
+    String getCriticalPathReport();
+}
@@ -19,18 +19,28 @@ package com.griddynamics.banshun;
 import com.griddynamics.banshun.config.xml.ParserUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanCreationException;
 import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.parsing.ReaderEventListener;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.BeanDefinitionValidationException;
 import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
 import org.springframework.beans.factory.xml.ResourceEntityResolver;
 import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Alexey Olenev
@@ -43,12 +53,101 @@ public class StrictContextParentBean extends ContextParentBean implements BeanNa
     private List<String> runOnlyServices = new ArrayList<>();
     private LocationsGraph locationsGraph;
 
+    /**
+     * Bean definitions parsed during the analysis, keyed by location. They're handed over to the
+     * child contexts, so each XML is parsed only once.
+     */
+    private final Map<String, BeanDefinitionRegistry> parsedDefinitions = new ConcurrentHashMap<>();
+
+    /**
+     * Time spent parsing the {@link #parsedDefinitions} during the analysis, keyed by location.
+     * It's attributed to the location when its child context takes the definitions.
+     */
+    private final Map<String, Long> parseNanos = new ConcurrentHashMap<>();
+
+    /**
+     * Resolved lazy locations that haven't been activated yet.
+     */
+    private final Set<String> lazyLocations = new HashSet<>();
+
+    /**
+     * Activations of the lazy locations that are in progress, guarded by <tt>lazyLocations</tt>.
+     */
+    private final Map<String, Activation> activations = new HashMap<>();
+    private volatile Map<String, String> exporterLocations = Collections.emptyMap();
+    private String[] lazyConfigLocations = new String[0];
+
     private boolean prohibitCycles = true;
+    private File analysisCacheFile = null;
+    private boolean analysisCacheContentHash = false;
+    private int analysisParallelism = Runtime.getRuntime().availableProcessors();
+    private boolean useModuleManifests = false;
 
     public void setProhibitCycles(boolean prohibitCycles) {
         this.prohibitCycles = prohibitCycles;
     }
 
+    /**
+     * Specifies a file to cache results of the dependency analysis in. Locations whose resources
+     * haven't changed since the last start are not parsed and validated again, and when none of
+     * them has changed, the whole analysis is skipped. Locations that import other resources via
+     * <tt>&lt;import&gt;</tt> are not cached, they're always analyzed. The cache is ignored when the root context
+     * runs with other active or default profiles than when it was written. Note that classes of
+     * the beans declared in unchanged locations are not checked for existence.
+     *
+     * @default null, i.e. cache is disabled.
+     */
+    public void setAnalysisCacheFile(File analysisCacheFile) {
+        this.analysisCacheFile = analysisCacheFile;
+    }
+
+    /**
+     * Specifies whether resources should be fingerprinted by hash of their content instead of
+     * their size and last modification time.
+     *
+     * @default false
+     */
+    public void setAnalysisCacheContentHash(boolean analysisCacheContentHash) {
+        this.analysisCacheContentHash = analysisCacheContentHash;
+    }
+
+    /**
+     * Specifies number of threads used to parse the locations and check classes of their beans
+     * during the dependency analysis. The results are merged in the order of the locations, so
+     * the reported errors are the same as when analyzed one by one.
+     *
+     * @default number of available processors; 1 means that all locations are analyzed in the
+     *          thread that initializes this bean.
+     */
+    public void setAnalysisParallelism(int analysisParallelism) {
+        Assert.isTrue(analysisParallelism > 0, "analysisParallelism must be positive");
+        this.analysisParallelism = analysisParallelism;
+    }
+
+    /**
+     * Specifies whether imports and exports of a location should be read from its
+     * {@link ModuleManifest manifest} generated at build time, if there's an up-to-date one,
+     * instead of parsing the location. Just like with the analysis cache, classes of the beans
+     * declared in such location are not checked for existence, and the location is parsed later
+     * by its child context.
+     *
+     * @default false
+     */
+    public void setUseModuleManifests(boolean useModuleManifests) {
+        this.useModuleManifests = useModuleManifests;
+    }
+
+    /**
+     * Specifies locations (may contain wildcards) of the child contexts that should not be
+     * initialized on startup. Such context is initialized when a service exported by it is used
+     * for the first time, together with the lazy contexts it depends on.
+     *
+     * @default empty
+     */
+    public void setLazyConfigLocations(String[] lazyConfigLocations) {
+        this.lazyConfigLocations = lazyConfigLocations;
+    }
+
     public String getName() {
         return name;
     }
@@ -70,14 +169,119 @@ public class StrictContextParentBean extends ContextParentBean implements BeanNa
         locationsGraph.transitiveClosure(loc, ignoredLocations, false);
     }
 
+    @Override
+    protected Collection<String> getLocationDependencies(String location) {
+        return locationsGraph != null ? locationsGraph.getDependencies(location) : super.getLocationDependencies(location);
+    }
+
+    @Override
+    protected Collection<String> getDependentLocations(String location) {
+        Set<String> dependents = new HashSet<>();
+        locationsGraph.transitiveClosure(location, dependents, false);
+        dependents.remove(location);
+
+        return dependents;
+    }
+
+    @Override
+    protected boolean isLazyLocation(String location) {
+        synchronized (lazyLocations) {
+            return lazyLocations.contains(location);
+        }
+    }
+
+    @Override
+    protected boolean activateExporter(String serviceName) {
+        String exporterLocation = exporterLocations.get(serviceName);
+        if (exporterLocation == null) {
+            return false;
+        }
+        List<Activation> required = new ArrayList<>();
+
+        synchronized (lazyLocations) {
+            if (!lazyLocations.contains(exporterLocation) && !activations.containsKey(exporterLocation)) {
+                return false;
+            }
+            Set<String> requiredLocations = new HashSet<>();
+            locationsGraph.transitiveClosure(exporterLocation, requiredLocations, true);
+
+            for (String loc : resultConfigLocations) {
+                if (!requiredLocations.contains(loc)) {
+                    continue;
+                }
+                if (lazyLocations.remove(loc)) {
+                    log.info("Activating lazy location {} required by service '{}'", loc, serviceName);
+                    activations.put(loc, new Activation(loc));
+                }
+                if (activations.containsKey(loc)) {
+                    required.add(activations.get(loc));
+                }
+            }
+        }
+        // activate dependencies first; the contexts are refreshed without holding any lock
+        for (Activation activation : required) {
+            activation.runOrAwait();
+        }
+        return true;
+    }
+
+    @Override
+    protected BeanDefinitionRegistry takeParsedBeanDefinitions(Resource resource) {
+        String location = ParserUtils.extractResourcePath(resource);
+        BeanDefinitionRegistry definitions = parsedDefinitions.remove(location);
+        Long nanos = parseNanos.remove(location);
+
+        if (definitions != null && nanos != null) {
+            getStartupMetrics().location(location).addParse(nanos);
+        }
+        return definitions;
+    }
+
+    @Override
+    void initializeChildContexts() {
+        try {
+            super.initializeChildContexts();
+        } finally {
+            // release definitions of the skipped and failed locations
+            parsedDefinitions.clear();
+            parseNanos.clear();
+        }
+    }
+
     @Override
     protected List<String> analyzeDependencies(List<String> configLocations) throws Exception {
         ContextAnalyzer analyzer = new ContextAnalyzer();
         List<Exception> exceptions = new LinkedList<>();
 
+        String profiles = AnalysisCache.profilesOf(context.getEnvironment());
+        AnalysisCache cache = analysisCacheFile != null ? AnalysisCache.load(analysisCacheFile, profiles) : null;
+        Map<String, AnalysisCache.Entry> cacheEntries = new LinkedHashMap<>();
+        boolean allCached = cache != null;
+
         List<String> limitedLocations = new ArrayList<>();
-        for (String loc : configLocations) {
-            BeanDefinitionRegistry beanFactory = getBeanFactory(loc);
+        for (LocationAnalysis analysis : analyzeLocations(configLocations, cache)) {
+            String loc = analysis.location;
+
+            if (analysis.failure != null) {
+                throw analysis.failure;
+            }
+            if (analysis.cachedEntry != null) {
+                addCachedReferences(analyzer, analysis, limitedLocations, exceptions);
+                cacheEntries.put(loc, analysis.cachedEntry);
+                // the cached order doesn't have to be valid for references from a manifest
+                allCached &= !analysis.fromManifest;
+                continue;
+            }
+            allCached = false;
+            AnalysisCache.Entry entry = new AnalysisCache.Entry(analysis.fingerprint, loc);
+            // the fingerprint doesn't cover the imported resources
+            if (!analysis.hasImports) {
+                cacheEntries.put(loc, entry);
+            }
+
+            BeanDefinitionRegistry beanFactory = analysis.beanFactory;
+            parsedDefinitions.put(loc, beanFactory);
+            parseNanos.put(loc, analysis.parseNanos);
 
             String[] beanNames = beanFactory.getBeanDefinitionNames();
             for (String beanName : beanNames) {
@@ -85,13 +289,15 @@ public class StrictContextParentBean extends ContextParentBean implements BeanNa
                 try {
                     if (isExport(beanDefinition)) {
                         analyzer.addExport(beanDefinition);
+                        entry.addExport((BeanReferenceInfo) beanDefinition.getAttribute(ParserUtils.EXPORT_BEAN_DEF_ATTR_NAME));
                         if (checkForRunOnly(beanName)) {
                             limitedLocations.add(loc);
                         }
                     } else if (isImport(beanDefinition)) {
                         analyzer.addImport(beanDefinition);
-                    } else if (beanDefinition.getBeanClassName() != null) {
-                        checkClassExist(loc, beanName, beanDefinition.getBeanClassName());
+                        entry.addImport((BeanReferenceInfo) beanDefinition.getAttribute(ParserUtils.IMPORT_BEAN_DEF_ATTR_NAME));
+                    } else if (analysis.missingClasses.containsKey(beanName)) {
+                        throw analysis.missingClasses.get(beanName);
                     }
                 } catch (Exception ex) {
                     exceptions.add(ex);
@@ -99,11 +305,15 @@ public class StrictContextParentBean extends ContextParentBean implements BeanNa
             }
         }
 
-        analyzer.areThereExportsWithoutImport();
+        boolean useCachedOrder = allCached && cache.isSortedFor(configLocations, prohibitCycles);
+
+        if (!useCachedOrder) {
+            analyzer.areThereExportsWithoutImport();
 
-        if (analyzer.areThereImportsWithoutExports() || !analyzer.areImportsTypesCorrect()) {
-            exceptions.add(new BeanDefinitionValidationException(
-                    "There are severe errors while parsing contexts. See logs for details"));
+            if (analyzer.areThereImportsWithoutExports() || !analyzer.areImportsTypesCorrect()) {
+                exceptions.add(new BeanDefinitionValidationException(
+                        "There are severe errors while parsing contexts. See logs for details"));
+            }
         }
         
         if (!exceptions.isEmpty()) {
@@ -113,31 +323,120 @@ public class StrictContextParentBean extends ContextParentBean implements BeanNa
             throw exceptions.get(0);
         }
 
-        DependencySorter sorter = new DependencySorter(configLocations.toArray(new String[0]), analyzer.getImports(), analyzer.getExports());
-        sorter.setProhibitCycles(prohibitCycles);
+        String[] sortedLocations;
+        if (useCachedOrder) {
+            log.debug("All {} locations are unchanged, using cached analysis from {}", configLocations.size(), analysisCacheFile);
+            sortedLocations = cache.getSortedLocations();
+        } else {
+            long sortStart = System.nanoTime();
+            DependencySorter sorter = new DependencySorter(configLocations.toArray(new String[0]), analyzer.getImports(), analyzer.getExports());
+            sorter.setProhibitCycles(prohibitCycles);
+            sortedLocations = sorter.sort();
+            getStartupMetrics().setSortNanos(System.nanoTime() - sortStart);
+
+            if (analysisCacheFile != null) {
+                new AnalysisCache(profiles, cacheEntries, configLocations, prohibitCycles, sortedLocations).save(analysisCacheFile);
+            }
+        }
 
         locationsGraph = new LocationsGraph(analyzer.getImports(), analyzer.getExports());
-        List<String> analyzedConfigLocations = locationsGraph.filterConfigLocations(limitedLocations, sorter.sort());
+        List<String> analyzedConfigLocations = locationsGraph.filterConfigLocations(limitedLocations, sortedLocations);
+        parsedDefinitions.keySet().retainAll(analyzedConfigLocations);
+        parseNanos.keySet().retainAll(analyzedConfigLocations);
+        resolveLazyLocations(analyzedConfigLocations, analyzer.getExports());
 
         log.info("ordered list of the contexts: {}", analyzedConfigLocations);
+        log.debug("Class resolution cache: {} hits, {} misses", ClassResolutionCache.getSharedInstance().getHitCount(),
+                ClassResolutionCache.getSharedInstance().getMissCount());
 
         return analyzedConfigLocations;
     }
 
+    private void resolveLazyLocations(List<String> analyzedConfigLocations, Map<String, BeanReferenceInfo> exports) throws IOException {
+        synchronized (lazyLocations) {
+            lazyLocations.clear();
+            for (String location : lazyConfigLocations) {
+                lazyLocations.addAll(collectConfigLocations(location));
+            }
+            lazyLocations.retainAll(analyzedConfigLocations);
+        }
+        if (lazyLocations.isEmpty()) {
+            return;
+        }
+        Map<String, String> result = new HashMap<>();
+        for (BeanReferenceInfo export : exports.values()) {
+            result.put(export.getServiceName(), export.getLocation());
+        }
+        exporterLocations = result;
+
+        log.info("lazy locations: {}", lazyLocations);
+    }
+
+    /**
+     * Parses the locations and checks classes of their beans, or loads their cached references.
+     * The locations are analyzed concurrently on a fork-join pool, unless the parallelism is 1.
+     *
+     * @return Results of the analysis in the order of the given locations.
+     */
+    private List<LocationAnalysis> analyzeLocations(List<String> configLocations, AnalysisCache cache) {
+        final List<LocationAnalysis> analyses = new ArrayList<>(configLocations.size());
+        for (String loc : configLocations) {
+            analyses.add(new LocationAnalysis(loc, cache));
+        }
+
+        if (analysisParallelism > 1 && analyses.size() > 1) {
+            ForkJoinPool pool = new ForkJoinPool(Math.min(analysisParallelism, analyses.size()));
+            try {
+                pool.invoke(new RecursiveAction() {
+                    protected void compute() {
+                        invokeAll(analyses);
+                    }
+                });
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            for (LocationAnalysis analysis : analyses) {
+                analysis.compute();
+            }
+        }
+        return analyses;
+    }
+
+    /**
+     * Adds imports and exports from the cached entry into the analyzer.
+     */
+    private void addCachedReferences(ContextAnalyzer analyzer, LocationAnalysis analysis,
+                                     List<String> limitedLocations, List<Exception> exceptions) {
+        for (BeanReferenceInfo export : analysis.cachedExports) {
+            try {
+                analyzer.putInExports(export);
+                if (checkForRunOnly(export.getServiceName() + EXPORT_REF_SUFFIX)) {
+                    limitedLocations.add(analysis.location);
+                }
+            } catch (Exception ex) {
+                exceptions.add(ex);
+            }
+        }
+        for (BeanReferenceInfo imp : analysis.cachedImports) {
+            analyzer.putInImports(imp);
+        }
+    }
+
     private void checkClassExist(String location, String beanName, String beanClassName) throws ClassNotFoundException {
-        try {
-            Class.forName(beanClassName);
-        } catch (ClassNotFoundException e) {
+        if (ClassResolutionCache.getSharedInstance().findClass(beanClassName, StrictContextParentBean.class.getClassLoader()) == null) {
             throw new ClassNotFoundException (MessageFormat.format(
                     "Class not found {0} in location: {1} for bean: {2}", beanClassName, location, beanName));
         }
     }
 
-    private BeanDefinitionRegistry getBeanFactory(String location) {
-        XmlBeanDefinitionReader beanDefinitionReader = new XmlBeanDefinitionReader(new SimpleBeanDefinitionRegistry());
+    private BeanDefinitionRegistry getBeanFactory(String location, ReaderEventListener eventListener) {
+        XmlBeanDefinitionReader beanDefinitionReader = new XmlBeanDefinitionReader(new OrderedBeanDefinitionRegistry());
+        beanDefinitionReader.setEventListener(eventListener);
+        beanDefinitionReader.setEnvironment(context.getEnvironment());
         beanDefinitionReader.setResourceLoader(context);
         beanDefinitionReader.setEntityResolver(new ResourceEntityResolver(context));
-        beanDefinitionReader.loadBeanDefinitions(location);
+        beanDefinitionReader.loadBeanDefinitions(getResolvedResource(location));
 
         return beanDefinitionReader.getBeanFactory();
     }
@@ -165,4 +464,163 @@ public class StrictContextParentBean extends ContextParentBean implements BeanNa
     private boolean checkForRunOnly(String beanName) {
         return !runOnlyServices.isEmpty() && runOnlyServices.contains(beanName);
     }
+
+
+    /**
+     * Analysis of a single location that doesn't touch any shared state, so the locations can be
+     * analyzed concurrently. It either loads the references from the cached entry or the module
+     * manifest, or parses the location and checks classes of its beans. The interfaces of the cached references are loaded
+     * before anything is used, so the entry is either used as a whole or not at all.
+     */
+    private class LocationAnalysis extends RecursiveAction {
+
+        final String location;
+        private final AnalysisCache cache;
+
+        String fingerprint;
+        AnalysisCache.Entry cachedEntry;
+        boolean fromManifest;
+        List<BeanReferenceInfo> cachedExports;
+        List<BeanReferenceInfo> cachedImports;
+        BeanDefinitionRegistry beanFactory;
+        long parseNanos;
+        boolean hasImports;
+        final Map<String, ClassNotFoundException> missingClasses = new HashMap<>();
+        Exception failure;
+
+        LocationAnalysis(String location, AnalysisCache cache) {
+            this.location = location;
+            this.cache = cache;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                fingerprint = analysisCacheFile != null
+                        ? AnalysisCache.fingerprint(getResolvedResource(location), analysisCacheContentHash)
+                        : null;
+                AnalysisCache.Entry entry = cache != null ? cache.getEntry(location, fingerprint) : null;
+
+                if (entry == null && useModuleManifests) {
+                    entry = ModuleManifest.load(getResolvedResource(location), location, fingerprint);
+                    fromManifest = entry != null;
+                }
+                if (entry != null) {
+                    try {
+                        cachedExports = entry.getExports();
+                        cachedImports = entry.getImports();
+                        cachedEntry = entry;
+                        return;
+                    } catch (ClassNotFoundException ex) {
+                        log.debug("Cached analysis of {} refers to missing class, analyzing it again", location);
+                        fromManifest = false;
+                    }
+                }
+                long parseStart = System.nanoTime();
+                ImportsDetectingListener importsListener = new ImportsDetectingListener();
+                beanFactory = getBeanFactory(location, importsListener);
+                parseNanos = System.nanoTime() - parseStart;
+                hasImports = importsListener.hasImports();
+
+                for (String beanName : beanFactory.getBeanDefinitionNames()) {
+                    BeanDefinition beanDefinition = beanFactory.getBeanDefinition(beanName);
+
+                    if (!isExport(beanDefinition) && !isImport(beanDefinition) && beanDefinition.getBeanClassName() != null) {
+                        try {
+                            checkClassExist(location, beanName, beanDefinition.getBeanClassName());
+                        } catch (ClassNotFoundException ex) {
+                            missingClasses.put(beanName, ex);
+                        }
+                    }
+                }
+            } catch (Exception ex) {
+                failure = ex;
+            }
+        }
+    }
+
+    /**
+     * Activation of a single lazy location. It's run by the thread that has removed the location
+     * from the lazy ones, other threads that need the location wait for it to finish.
+     */
+    private class Activation extends FutureTask<Void> {
+
+        private final String location;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private volatile Thread runner;
+
+        Activation(final String location) {
+            super(new Runnable() {
+                public void run() {
+                    activateLocation(location);
+                }
+            }, null);
+            this.location = location;
+        }
+
+        @Override
+        public void run() {
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
+            runner = Thread.currentThread();
+            try {
+                super.run();
+            } finally {
+                synchronized (lazyLocations) {
+                    activations.remove(location);
+                }
+            }
+        }
+
+        /**
+         * Runs the activation if it hasn't been started yet, otherwise waits for it to finish.
+         * When invoked from the activating thread itself, e.g. by a bean of the location being
+         * activated, it returns immediately.
+         */
+        void runOrAwait() {
+            if (runner == Thread.currentThread()) {
+                return;
+            }
+            run();
+            try {
+                get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new BeanCreationException(location, "Interrupted while waiting for activation of the lazy location", ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw new BeanCreationException(location, "Failed to activate lazy location", ex.getCause());
+            }
+        }
+    }
+
+    /**
+     * Registry that keeps bean definitions in the order of registration, just like the bean
+     * factory of a context does. The definitions are later registered into the child context
+     * in this order.
+     */
+    private static class OrderedBeanDefinitionRegistry extends SimpleBeanDefinitionRegistry {
+
+        private final Set<String> beanDefinitionNames = new LinkedHashSet<>();
+
+        @Override
+        public void registerBeanDefinition(String beanName, BeanDefinition beanDefinition) {
+            super.registerBeanDefinition(beanName, beanDefinition);
+            beanDefinitionNames.add(beanName);
+        }
+
+        @Override
+        public void removeBeanDefinition(String beanName) {
+            super.removeBeanDefinition(beanName);
+            beanDefinitionNames.remove(beanName);
+        }
+
+        @Override
+        public String[] getBeanDefinitionNames() {
+            return beanDefinitionNames.toArray(new String[beanDefinitionNames.size()]);
+        }
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executor that runs each task in a new virtual thread, intended for
+ * {@link ContextParentBean#setChildContextExecutor(java.util.concurrent.Executor) childContextExecutor}.
+ * Child contexts that block on I/O during refresh don't occupy a platform thread, so any number
+ * of independent contexts can be refreshed at the same time.
+ *
+ * <p>Refresh of a context is <tt>synchronized</tt> on its startup monitor and so are the monitors
+ * of its bean factory. Before Java 24 (JEP 491), a virtual thread that blocks inside a
+ * <tt>synchronized</tt> block pins its carrier thread, so a handful of contexts blocked on I/O
+ * would occupy all the carriers and stall the others. Virtual threads are therefore used only
+ * since Java 24; they're created reflectively and on older JVMs the executor falls back to a new
+ * platform thread per task (reusing idle ones).</p>
+ */
+public class VirtualThreadTaskExecutor implements TaskExecutor, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadTaskExecutor.class);
+
+    /**
+     * The first Java version where virtual threads don't pin their carrier in <tt>synchronized</tt>.
+     */
+    private static final int MIN_JAVA_VERSION = 24;
+
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR =
+            ReflectionUtils.findMethod(Executors.class, "newVirtualThreadPerTaskExecutor");
+
+    private final ExecutorService executor;
+
+
+    public VirtualThreadTaskExecutor() {
+        if (isSupported()) {
+            executor = (ExecutorService) ReflectionUtils.invokeMethod(NEW_VIRTUAL_THREAD_EXECUTOR, null);
+        } else {
+            log.warn("Virtual threads are not supported by this JVM or pin their carrier in synchronized blocks, "
+                    + "using a platform thread per task instead");
+            executor = Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * @return Whether this JVM supports virtual threads that don't pin their carrier thread while
+     *         blocked in <tt>synchronized</tt>, i.e. it's Java 24 or newer.
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null && javaVersion() >= MIN_JAVA_VERSION;
+    }
+
+    private static int javaVersion() {
+        String version = System.getProperty("java.specification.version", "");
+        try {
+            // "1.7" and "1.8" before Java 9, then just the major version
+            return version.startsWith("1.") ? 1 : Integer.parseInt(version);
+        } catch (NumberFormatException ex) {
+            return 1;
+        }
+    }
+
+
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Stops accepting new tasks, already submitted tasks are finished.
+     */
+    public void destroy() {
+        executor.shutdown();
+    }
+}
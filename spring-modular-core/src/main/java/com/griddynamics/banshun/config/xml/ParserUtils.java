@@ -18,6 +18,7 @@
  */
 package com.griddynamics.banshun.config.xml;
 
+import com.griddynamics.banshun.ClassResolutionCache;
 import org.springframework.beans.factory.CannotLoadBeanClassException;
 import org.springframework.beans.factory.xml.ParserContext;
 import org.springframework.core.io.Resource;
@@ -43,7 +44,7 @@ public final class ParserUtils {
     public static Class<?> findClassByName(String className, String beanName, ParserContext parserContext) {
         String description = parserContext.getReaderContext().getResource().getDescription();
         try {
-            return Class.forName(className);
+            return ClassResolutionCache.getSharedInstance().forName(className, ParserUtils.class.getClassLoader());
         } catch (ClassNotFoundException ex) {
             throw new CannotLoadBeanClassException(description, beanName, className, ex);
         }
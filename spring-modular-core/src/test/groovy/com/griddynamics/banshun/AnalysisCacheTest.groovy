@@ -0,0 +1,160 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun
+
+import com.griddynamics.banshun.fixtures.Child
+import com.griddynamics.banshun.fixtures.MiddleFace
+import com.griddynamics.banshun.fixtures.RootFace
+import org.springframework.beans.factory.BeanDefinitionStoreException
+import org.springframework.context.support.GenericApplicationContext
+import org.springframework.core.env.StandardEnvironment
+import org.springframework.core.io.ByteArrayResource
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+import static com.griddynamics.banshun.test.TestUtils.BEANS_XML_HEAD
+import static com.griddynamics.banshun.test.TestUtils.BEANS_XML_TAIL
+
+class AnalysisCacheTest extends Specification {
+
+    def file = File.createTempFile('analysis', '.cache')
+
+    def cleanup() {
+        file.delete()
+    }
+
+
+    def 'save and load cache'() {
+        setup:
+            def entry = new AnalysisCache.Entry('fp1', 'ctx1').with {
+                addExport(new BeanReferenceInfo('bean1', MiddleFace, 'ctx1'))
+                addImport(new BeanReferenceInfo('bean2', RootFace, 'ctx1')); it
+            }
+            def cache = new AnalysisCache('profiles', [ctx1: entry], ['ctx1'], true, ['ctx1'] as String[])
+        when:
+            cache.save(file)
+            def loaded = AnalysisCache.load(file, 'profiles')
+        then:
+            loaded.isSortedFor(['ctx1'], true)
+            !loaded.isSortedFor(['ctx1'], false)
+            !loaded.isSortedFor(['ctx1', 'ctx2'], true)
+            loaded.sortedLocations == ['ctx1'] as String[]
+        and:
+            loaded.getEntry('ctx1', 'fp1').exports == [new BeanReferenceInfo('bean1', MiddleFace, 'ctx1')]
+            loaded.getEntry('ctx1', 'fp1').imports == [new BeanReferenceInfo('bean2', RootFace, 'ctx1')]
+        and: 'entry with changed fingerprint is invalid'
+            loaded.getEntry('ctx1', 'fp2') == null
+            loaded.getEntry('ctx2', 'fp1') == null
+    }
+
+    def 'ignore missing or corrupted cache file'() {
+        when:
+            file.bytes = content
+        then:
+            AnalysisCache.load(file, 'profiles') == null
+        where:
+            content << [ [] as byte[], [0, 0, 0, 42] as byte[] ]
+    }
+
+    def 'ignore cache made for other profiles'() {
+        setup:
+            new AnalysisCache('active=a;default=default', [:], [], true, [] as String[]).save(file)
+        expect:
+            AnalysisCache.load(file, 'active=b;default=default') == null
+            AnalysisCache.load(file, 'active=a;default=default') != null
+    }
+
+    def 'describe profiles of the environment regardless of their order'() {
+        setup:
+            def environment = new StandardEnvironment()
+            environment.setActiveProfiles('b', 'a')
+        expect:
+            AnalysisCache.profilesOf(environment) == 'active=a,b;default=default'
+    }
+
+    def 'fingerprint resource by its content'() {
+        expect:
+            AnalysisCache.fingerprint(new ByteArrayResource('foo'.bytes), false) ==
+                    AnalysisCache.fingerprint(new ByteArrayResource('foo'.bytes), true)
+            AnalysisCache.fingerprint(new ByteArrayResource('foo'.bytes), true) !=
+                    AnalysisCache.fingerprint(new ByteArrayResource('bar'.bytes), true)
+    }
+
+    def 'reuse cached analysis on the next start'() {
+        setup:
+            def dir = Files.createTempDirectory('analysis').toFile()
+            def location = new File(dir, 'module.xml')
+            location.text = BEANS_XML_HEAD + """
+                <bean id="bean1" class="com.griddynamics.banshun.fixtures.ChildImpl" />
+                <bs:export name="service1" ref="bean1" interface="${Child.name}" />
+                """ + BEANS_XML_TAIL
+            def lastModified = location.lastModified()
+            file.delete()
+        when:
+            def first = analyze(location)
+        then:
+            file.exists()
+        when: 'content is broken, but size and modification time are kept'
+            location.text = location.text.replace('<bean ', '<!-- x')
+            location.lastModified = lastModified
+            def second = analyze(location)
+        then: 'location is not parsed again'
+            second.resultConfigLocations == first.resultConfigLocations
+        when: 'analyzed with other profile'
+            analyze(location, 'other')
+        then: 'cache is ignored'
+            thrown(BeanDefinitionStoreException)
+        cleanup:
+            dir.deleteDir()
+    }
+
+    def 'analyze location that imports other resources again on the next start'() {
+        setup:
+            def dir = Files.createTempDirectory('analysis').toFile()
+            def imported = new File(dir, 'imported.xml')
+            imported.text = BEANS_XML_HEAD + """
+                <bean id="bean1" class="com.griddynamics.banshun.fixtures.ChildImpl" />
+                <bs:export name="service1" ref="bean1" interface="${Child.name}" />
+                """ + BEANS_XML_TAIL
+            def location = new File(dir, 'module.xml')
+            location.text = BEANS_XML_HEAD + '<import resource="imported.xml" />' + BEANS_XML_TAIL
+            file.delete()
+        when:
+            analyze(location)
+        then:
+            file.exists()
+        when: 'only the imported resource is changed'
+            imported.text = imported.text.replace('<bean ', '<!-- x')
+            analyze(location)
+        then: 'location is parsed again'
+            thrown(BeanDefinitionStoreException)
+        cleanup:
+            dir.deleteDir()
+    }
+
+
+    def analyze(File location, String... activeProfiles) {
+        def context = new GenericApplicationContext()
+        context.environment.activeProfiles = activeProfiles
+        def parentBean = new StrictContextParentBean(
+                applicationContext: context,
+                configLocations: [ location.toURI().toString() ] as String[],
+                analysisCacheFile: file)
+        parentBean.afterPropertiesSet()
+        parentBean
+    }
+}
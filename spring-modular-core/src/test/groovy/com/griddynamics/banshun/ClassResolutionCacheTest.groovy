@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun
+
+import com.griddynamics.banshun.fixtures.JustBean
+import com.griddynamics.banshun.fixtures.RootFace
+import spock.lang.Specification
+
+class ClassResolutionCacheTest extends Specification {
+
+    def classLoader = getClass().classLoader
+    def cache = new ClassResolutionCache(2)
+
+
+    def 'resolve class only once'() {
+        when:
+            def results = (1..3).collect { cache.findClass(RootFace.name, classLoader) }
+        then:
+            results == [RootFace] * 3
+            cache.missCount == 1
+            cache.hitCount == 2
+    }
+
+    def 'cache missing class'() {
+        when:
+            cache.forName('com.example.Missing', classLoader)
+        then:
+            thrown(ClassNotFoundException)
+        and:
+            cache.findClass('com.example.Missing', classLoader) == null
+            cache.missCount == 1
+            cache.hitCount == 1
+    }
+
+    def 'key entries by class loader'() {
+        setup:
+            def otherLoader = new URLClassLoader([] as URL[], classLoader)
+        when:
+            cache.findClass(RootFace.name, classLoader)
+            cache.findClass(RootFace.name, otherLoader)
+        then:
+            cache.missCount == 2
+            cache.size() == 2
+    }
+
+    def 'evict least recently used entry when full'() {
+        when:
+            cache.findClass(RootFace.name, classLoader)
+            cache.findClass(JustBean.name, classLoader)
+            cache.findClass(RootFace.name, classLoader)
+            cache.findClass('com.example.Missing', classLoader)
+        then:
+            cache.size() == 2
+        when:
+            cache.findClass(RootFace.name, classLoader)
+            cache.findClass(JustBean.name, classLoader)
+        then: 'JustBean has been evicted'
+            cache.hitCount == 2
+            cache.missCount == 4
+    }
+
+    def 'evict entries of class loader when its last user is released'() {
+        setup:
+            def otherLoader = new URLClassLoader([] as URL[], classLoader)
+            cache.retain(classLoader)
+            cache.retain(classLoader)
+            cache.findClass(RootFace.name, classLoader)
+            cache.findClass(RootFace.name, otherLoader)
+        when:
+            cache.release(classLoader)
+        then: 'another user still uses the class loader'
+            cache.size() == 2
+        when:
+            cache.release(classLoader)
+        then: 'only entries of the released class loader are evicted'
+            cache.size() == 1
+            cache.findClass(RootFace.name, otherLoader) == RootFace
+            cache.hitCount == 1
+    }
+}
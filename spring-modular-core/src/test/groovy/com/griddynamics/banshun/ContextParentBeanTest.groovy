@@ -20,6 +20,7 @@ import com.griddynamics.banshun.fixtures.RootFace
 import com.griddynamics.banshun.test.TestUtils
 import org.springframework.aop.framework.ProxyFactoryBean
 import org.springframework.beans.factory.BeanFactory
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory
 import org.springframework.beans.factory.support.DefaultListableBeanFactory
 import org.springframework.beans.factory.support.RootBeanDefinition
 import org.springframework.context.ConfigurableApplicationContext
@@ -29,7 +30,14 @@ import org.springframework.context.support.AbstractApplicationContext
 import org.springframework.core.io.ClassPathResource
 import spock.lang.Specification
 
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeoutException
+
 import static com.griddynamics.banshun.test.TestUtils.BASE_PKG
+import static java.util.concurrent.TimeUnit.MILLISECONDS
+import static java.util.concurrent.TimeUnit.SECONDS
 import static org.springframework.beans.factory.config.BeanDefinition.ROLE_INFRASTRUCTURE
 
 class ContextParentBeanTest extends Specification {
@@ -101,6 +109,23 @@ class ContextParentBeanTest extends Specification {
     }
 
 
+    def 'resolve each location pattern only once'() {
+        setup:
+            def registry = new ContextParentBean(applicationContext: rootContext)
+            def (res1, res2) = locations.collect { new ClassPathResource(it) }
+            registry.configLocations = [locations[0], locations[1], locations[0]] as String[]
+            registry.excludeConfigLocations = [locations[1]] as String[]
+        when:
+            registry.afterPropertiesSet()
+        then:
+            1 * rootContext.getResources(locations[0]) >> [res1]
+            1 * rootContext.getResources(locations[1]) >> [res2]
+        and:
+            registry.resultConfigLocations == [res1.URI.toString()]
+            registry.getResolvedResource(res1.URI.toString()).is(res1)
+    }
+
+
     def 'export bean for the first time'() {
         setup:
             def registry = new ContextParentBean(applicationContext: rootContext)
@@ -116,6 +141,7 @@ class ContextParentBeanTest extends Specification {
             targetSource.beanName == 'bean1'
             targetSource.targetClass == RootFace
             targetSource.beanFactory == childBeanFactory
+            registry.exportedServices['export1'].is(targetSource)
     }
 
     def 'export already exported bean'() {
@@ -167,6 +193,109 @@ class ContextParentBeanTest extends Specification {
            actual == expected
     }
 
+    def 'lookup registered import from the registry'() {
+        setup:
+            def registry = new ContextParentBean(applicationContext: rootContext)
+            def expected = new JustBean()
+        when:
+            def results = (1..3).collect { registry.lookup('export1', JustBean) }
+        then:
+            1 * rootContext.containsBean('export1_beanDef') >> false
+            1 * beanFactory.registerBeanDefinition('export1_beanDef', _)
+            1 * rootContext.getBean('export1_beanDef', JustBean) >> expected
+        and:
+            results.every { it.is(expected) }
+    }
+
+    def 'register import only once when looked up concurrently'() {
+        setup:
+            def registry = new ContextParentBean(applicationContext: rootContext)
+            def executor = Executors.newFixedThreadPool(8)
+            def expected = new JustBean()
+            rootContext.containsBean('export1_beanDef') >> false
+            rootContext.getBean('export1_beanDef', JustBean) >> expected
+        when:
+            def results = (1..50).collect {
+                executor.submit({ registry.lookup('export1', JustBean) } as Callable)
+            }*.get()
+        then:
+            1 * beanFactory.registerBeanDefinition('export1_beanDef', _)
+        and:
+            results.every { it.is(expected) }
+        cleanup:
+            executor.shutdown()
+    }
+
+    def 'ignore duplicate export of bound service'() {
+        setup:
+            def registry = new ContextParentBean(applicationContext: rootContext)
+            def childBeanFactory = Mock(BeanFactory)
+        when:
+            registry.export(new ExportRef('export1', RootFace, 'bean1', childBeanFactory))
+            registry.export(new ExportRef('export1', RootFace, 'bean2', childBeanFactory))
+        then:
+            1 * rootContext.containsBean('export1_targetSource') >> false
+            1 * beanFactory.registerSingleton('export1_targetSource', _)
+        and:
+            registry.exportedServices['export1'].beanName == 'bean1'
+    }
+
+    def 'wait for export of imported service when import timeout is set'() {
+        setup:
+            def registry = new ContextParentBean(applicationContext: rootContext, importTimeout: 5000)
+            def executor = Executors.newSingleThreadExecutor()
+            rootContext.containsBean('export1_targetSource') >> false
+        when:
+            def awaited = executor.submit({ registry.awaitExportTargetSource('export1') } as Callable)
+            registry.export(new ExportRef('export1', RootFace, 'bean1', Mock(BeanFactory)))
+        then:
+            awaited.get().is(registry.exportedServices['export1'])
+        cleanup:
+            executor.shutdown()
+    }
+
+    def 'complete async lookup when service is exported'() {
+        setup:
+            def registry = new ContextParentBean(applicationContext: rootContext)
+            def executor = Executors.newSingleThreadExecutor()
+            def expected = new JustBean()
+            rootContext.containsBean(_) >> false
+            rootContext.getBean('export1_beanDef', JustBean) >> expected
+        when:
+            def future = registry.lookupAsync('export1', JustBean)
+            def result = executor.submit({ future.get(5, SECONDS) } as Callable)
+        then:
+            !future.done
+        when:
+            registry.export(new ExportRef('export1', JustBean, 'bean1', Mock(BeanFactory)))
+        then:
+            result.get().is(expected)
+            future.done
+        cleanup:
+            executor.shutdown()
+    }
+
+    def 'time out async lookup of service that is not exported'() {
+        setup:
+            def registry = new ContextParentBean(applicationContext: rootContext)
+            rootContext.containsBean(_) >> false
+        when:
+            registry.lookupAsync('export1', JustBean).get(10, MILLISECONDS)
+        then:
+            thrown(TimeoutException)
+        and: 'no latch is left behind'
+            registry.pendingExports.isEmpty()
+    }
+
+    def 'remove latch of service that is not exported within import timeout'() {
+        setup:
+            def registry = new ContextParentBean(applicationContext: rootContext, importTimeout: 10)
+            rootContext.containsBean(_) >> false
+        expect:
+            registry.awaitExportTargetSource('export1') == null
+            registry.pendingExports.isEmpty()
+    }
+
     def 'invoke children contexts initialization on ContextRefreshedEvent'() {
         given:
             def refreshEvent = new ContextRefreshedEvent(rootContext)
@@ -240,6 +369,137 @@ class ContextParentBeanTest extends Specification {
             parentBeanSpy.children.contains(secondChildCtx)
     }
 
+    def 'initialize child contexts concurrently'() {
+        setup:
+            def executor = Executors.newFixedThreadPool(2)
+            def childContexts = locations.collectEntries { [(it): Mock(ConfigurableApplicationContext)] }
+            parentBeanSpy.childContextExecutor = executor
+        when:
+            parentBeanSpy.initializeChildContexts()
+        then:
+            locations.each { location ->
+                1 * parentBeanSpy.createChildContext({ it == new ClassPathResource(location) }, rootContext) >> childContexts[location]
+            }
+        and: 'children are in the same order as locations'
+            parentBeanSpy.children == locations.collect { childContexts[it] }
+        cleanup:
+            executor.shutdownNow()
+    }
+
+    def 'close child contexts concurrently in reverse dependency order'() {
+        setup:
+            def executor = Executors.newFixedThreadPool(2)
+            def childContexts = locations.collect { Mock(ConfigurableApplicationContext) }
+            parentBeanSpy.createChildContext(_, rootContext) >>> childContexts
+            parentBeanSpy.childContextShutdownExecutor = executor
+            parentBeanSpy.initializeChildContexts()
+        when:
+            parentBeanSpy.destroy()
+        then:
+            1 * childContexts[1].close()
+        then:
+            1 * childContexts[0].close()
+        cleanup:
+            executor.shutdownNow()
+    }
+
+    def 'continue shutdown when child context does not close within timeout'() {
+        setup:
+            def dependencyClosed = new CountDownLatch(1)
+            def childContexts = (0..1).collect { i ->
+                Mock(ConfigurableApplicationContext) { getDisplayName() >> 'child' + i }
+            }
+            parentBeanSpy.createChildContext(_, rootContext) >>> childContexts
+            parentBeanSpy.childContextShutdownTimeout = 100
+            parentBeanSpy.initializeChildContexts()
+        when:
+            parentBeanSpy.destroy()
+        then: 'dependent context waits for its dependency to be closed'
+            1 * childContexts[1].close() >> { dependencyClosed.await() }
+            1 * childContexts[0].close() >> { dependencyClosed.countDown() }
+        then: 'dependent context is reported as blocking the shutdown'
+            1 * parentBeanSpy.reportBlockingChildContexts(['child1'])
+    }
+
+    def 'wait for remaining child contexts when interrupted during sequential shutdown with timeout'() {
+        setup:
+            def closing = new CountDownLatch(1)
+            def release = new CountDownLatch(1)
+            def childContexts = (0..1).collect { i ->
+                Mock(ConfigurableApplicationContext) { getDisplayName() >> 'child' + i }
+            }
+            parentBeanSpy.createChildContext(_, rootContext) >>> childContexts
+            parentBeanSpy.childContextShutdownTimeout = 5000
+            parentBeanSpy.initializeChildContexts()
+            childContexts[1].close() >> { closing.countDown(); release.await() }
+        and:
+            def interrupted = false
+            def destroying = Thread.start {
+                parentBeanSpy.destroy()
+                interrupted = Thread.currentThread().isInterrupted()
+            }
+        when: 'destroying thread is interrupted while waiting for the dependent context'
+            closing.await(5, SECONDS)
+            destroying.interrupt()
+            destroying.join(5000)
+        then: 'the dependency is closed within the timeout and the interrupt flag is kept'
+            1 * childContexts[0].close()
+            1 * parentBeanSpy.reportBlockingChildContexts(['child1'])
+            interrupted
+        cleanup:
+            release.countDown()
+    }
+
+    def 'close remaining child contexts sequentially when interrupted'() {
+        setup:
+            def executor = Executors.newSingleThreadExecutor()
+            def closing = new CountDownLatch(1)
+            def release = new CountDownLatch(1)
+            def childContexts = locations.collect { Mock(ConfigurableApplicationContext) }
+            parentBeanSpy.createChildContext(_, rootContext) >>> childContexts
+            parentBeanSpy.childContextShutdownExecutor = executor
+            parentBeanSpy.initializeChildContexts()
+            childContexts[1].close() >> { closing.countDown(); release.await() }
+        and:
+            def interrupted = false
+            def destroying = Thread.start {
+                parentBeanSpy.destroy()
+                interrupted = Thread.currentThread().isInterrupted()
+            }
+        when: 'destroying thread is interrupted while the dependent context is closing'
+            closing.await(5, SECONDS)
+            destroying.interrupt()
+            destroying.join(5000)
+        then: 'the dependency is closed anyway and the interrupt flag is kept'
+            1 * childContexts[0].close()
+            interrupted
+        cleanup:
+            release.countDown()
+            executor.shutdownNow()
+    }
+
+    def 'warm up exported services after child contexts are initialized'() {
+        setup:
+            def executor = Executors.newFixedThreadPool(2)
+            def childBeanFactory = Mock(ConfigurableListableBeanFactory)
+            def childContext = Mock(ConfigurableApplicationContext) {
+                getBeanFactory() >> childBeanFactory
+            }
+            parentBeanSpy.createChildContext(_, rootContext) >>> [childContext, Mock(ConfigurableApplicationContext)]
+            parentBeanSpy.warmupExecutor = executor
+            parentBeanSpy.export(new ExportRef('export1', RootFace, 'bean1', childBeanFactory))
+        when:
+            parentBeanSpy.initializeChildContexts()
+        then:
+            1 * childBeanFactory.getType('bean1') >> JustBean
+            1 * childBeanFactory.getBean('bean1') >> new JustBean()
+        and:
+            parentBeanSpy.startupMetrics.getLocationTimings(locations[0]).warmupNanos >= 0
+            parentBeanSpy.startupMetrics.warmupMillis >= 0
+        cleanup:
+            executor.shutdownNow()
+    }
+
     def 'initialize child contexts when first fails and strict mode is enabled'() {
         setup:
             parentBeanSpy.strictErrorHandling = true
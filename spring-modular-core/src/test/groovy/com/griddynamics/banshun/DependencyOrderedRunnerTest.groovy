@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun
+
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+class DependencyOrderedRunnerTest extends Specification {
+
+    def executor = Executors.newFixedThreadPool(4)
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+
+    def 'start node only after all its prerequisites are finished'() {
+        setup:
+            def nodes = ['a', 'b', 'c', 'd', 'e']
+            def prerequisites = [c: ['a', 'b'], d: ['c'], e: ['a']]
+            def finished = new ConcurrentLinkedQueue()
+            def runner = new DependencyOrderedRunner(executor, nodes, prerequisites)
+        when:
+            runner.run({ String node ->
+                prerequisites[node].each { assert it in finished }
+                finished << node
+            } as DependencyOrderedRunner.Task)
+        then:
+            finished.size() == nodes.size()
+            finished as Set == nodes as Set
+    }
+
+    def 'ignore prerequisites that do not precede the node'() {
+        setup:
+            def nodes = ['a', 'b', 'c']
+            def prerequisites = [a: ['b'], b: ['a', 'x'], c: ['c']]
+            def finished = new ConcurrentLinkedQueue()
+        when:
+            new DependencyOrderedRunner(executor, nodes, prerequisites)
+                    .run({ String node -> finished << node } as DependencyOrderedRunner.Task)
+        then:
+            finished.size() == 3
+            finished.toList().indexOf('a') < finished.toList().indexOf('b')
+    }
+
+    def 'run long chain of nodes in the calling thread without deep recursion'() {
+        setup:
+            def nodes = (0..<20000).collect { 'n' + it }
+            def prerequisites = (1..<20000).collectEntries { ['n' + it, ['n' + (it - 1)]] }
+            def finished = []
+            def callerRuns = { Runnable command -> command.run() } as Executor
+        when:
+            new DependencyOrderedRunner(callerRuns, nodes, prerequisites)
+                    .run({ String node -> finished << node } as DependencyOrderedRunner.Task)
+        then:
+            notThrown(StackOverflowError)
+            finished == nodes
+    }
+
+    def 'skip not started nodes when aborted'() {
+        setup:
+            def nodes = ['a', 'b', 'c']
+            def prerequisites = [b: ['a'], c: ['b']]
+            def finished = new ConcurrentLinkedQueue()
+            def runner = new DependencyOrderedRunner(executor, nodes, prerequisites)
+        when:
+            runner.run({ String node ->
+                finished << node
+                if (node == 'a') runner.abort()
+            } as DependencyOrderedRunner.Task)
+        then:
+            finished.toList() == ['a']
+            runner.aborted
+    }
+}
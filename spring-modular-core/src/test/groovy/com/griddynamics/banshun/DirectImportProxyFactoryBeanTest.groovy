@@ -0,0 +1,124 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun
+
+import com.griddynamics.banshun.fixtures.JustBean
+import com.griddynamics.banshun.fixtures.MiddleFace
+import org.springframework.aop.TargetSource
+import org.springframework.beans.factory.NoSuchBeanDefinitionException
+import spock.lang.Specification
+
+class DirectImportProxyFactoryBeanTest extends Specification {
+
+    def targetSource = Mock(TargetSource) {
+        getTargetClass() >> MiddleFace
+    }
+    def factory = new DirectImportProxyFactoryBean(targetSource: targetSource)
+
+
+    def 'create singleton proxy of the target interface'() {
+        when:
+            def proxy = factory.object
+        then:
+            proxy instanceof MiddleFace
+            !(proxy instanceof JustBean)
+            factory.object.is(proxy)
+            factory.objectType == MiddleFace
+    }
+
+    def 'obtain target from the target source on each call'() {
+        setup:
+            def proxy = factory.object as MiddleFace
+        when:
+            def names = [proxy.name, proxy.name]
+        then:
+            2 * targetSource.getTarget() >>> [new JustBean(name: 'first'), new JustBean(name: 'second')]
+            0 * targetSource.releaseTarget(_)
+        and:
+            names == ['first', 'second']
+    }
+
+    def 'keep the first obtained target when static'() {
+        setup:
+            factory.staticTarget = true
+            def proxy = factory.object as MiddleFace
+        when: 'service is not exported yet'
+            proxy.name
+        then:
+            1 * targetSource.getTarget() >> { throw new NoSuchBeanDefinitionException('service1') }
+            thrown(NoSuchBeanDefinitionException)
+        when:
+            def names = [proxy.name, proxy.name]
+        then: 'target is obtained only until it is resolved'
+            1 * targetSource.getTarget() >> new JustBean(name: 'first')
+            names == ['first', 'first']
+    }
+
+    def 'delegate toString to the target'() {
+        setup:
+            def target = new JustBean()
+            targetSource.getTarget() >> target
+        expect:
+            factory.object.toString() == target.toString()
+    }
+
+    def 'compare proxies by their target sources without obtaining the target'() {
+        setup:
+            def proxy = factory.object
+            def sameSourceProxy = new DirectImportProxyFactoryBean(targetSource: targetSource).object
+            def otherProxy = new DirectImportProxyFactoryBean(targetSource: Mock(TargetSource) {
+                getTargetClass() >> MiddleFace
+            }).object
+        when:
+            def results = [
+                    proxy.equals(proxy), proxy.equals(sameSourceProxy), proxy.equals(otherProxy),
+                    proxy.equals(new JustBean()), proxy.hashCode() == sameSourceProxy.hashCode() ]
+        then:
+            0 * targetSource.getTarget()
+        and:
+            results == [true, true, false, false, true]
+    }
+
+    def 'put proxy into a hash set before the service is exported'() {
+        setup:
+            targetSource.getTarget() >> { throw new NoSuchBeanDefinitionException('service1') }
+        when:
+            def set = [factory.object] as HashSet
+        then:
+            notThrown(NoSuchBeanDefinitionException)
+            set.contains(factory.object)
+    }
+
+    def 'propagate exception from the target source'() {
+        setup:
+            targetSource.getTarget() >> { throw new NoSuchBeanDefinitionException('service1') }
+        when:
+            (factory.object as MiddleFace).name
+        then:
+            thrown(NoSuchBeanDefinitionException)
+    }
+
+    def 'refuse to proxy a class'() {
+        setup:
+            def factory = new DirectImportProxyFactoryBean(targetSource: Mock(TargetSource) {
+                getTargetClass() >> JustBean
+            })
+        when:
+            factory.object
+        then:
+            thrown(IllegalArgumentException)
+    }
+}
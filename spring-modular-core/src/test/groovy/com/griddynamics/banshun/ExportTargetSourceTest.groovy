@@ -20,8 +20,14 @@ import com.griddynamics.banshun.fixtures.MiddleFace
 import com.griddynamics.banshun.fixtures.RootFace
 import org.springframework.beans.factory.BeanFactory
 import org.springframework.beans.factory.BeanNotOfRequiredTypeException
+import org.springframework.beans.factory.NoSuchBeanDefinitionException
 import spock.lang.Specification
 
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+import static java.util.concurrent.TimeUnit.SECONDS
+
 class ExportTargetSourceTest extends Specification {
 
     def beanFactory = Mock(BeanFactory)
@@ -79,4 +85,37 @@ class ExportTargetSourceTest extends Specification {
             new RootFace(){}  | RootFace
            'string'           | String
     }
+
+    def 'block callers while suspended and then return bean from the rebound factory'() {
+        setup:
+            beanFactory.getType(beanName) >> MiddleFace
+            beanFactory.getBean(beanName) >> new JustBean(name: 'old')
+            def newBeanFactory = Mock(BeanFactory) {
+                getType('bean2') >> MiddleFace
+                getBean('bean2') >> new JustBean(name: 'new')
+            }
+            assert targetSource.getTarget().name == 'old'
+        when:
+            targetSource.suspend()
+            def future = Executors.newSingleThreadExecutor().submit({ targetSource.getTarget() } as Callable)
+            sleep(100)
+        then:
+            !future.done
+            !targetSource.bound
+        when:
+            targetSource.rebind(new ExportRef('service1', MiddleFace, 'bean2', newBeanFactory))
+        then:
+            future.get(5, SECONDS).name == 'new'
+            targetSource.bound
+            targetSource.beanFactory == newBeanFactory
+    }
+
+    def 'throw exception when the service is not exported after reload'() {
+        when:
+            targetSource.suspend()
+            targetSource.unbind()
+            targetSource.getTarget()
+        then:
+            thrown(NoSuchBeanDefinitionException)
+    }
 }
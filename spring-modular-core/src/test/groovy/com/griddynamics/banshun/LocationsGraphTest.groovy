@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun
+
+import com.griddynamics.banshun.fixtures.JustBean
+import com.griddynamics.banshun.fixtures.MiddleFace
+import com.griddynamics.banshun.fixtures.RootFace
+import org.springframework.beans.factory.BeanCreationException
+import org.springframework.beans.factory.support.BeanDefinitionValidationException
+import spock.lang.Specification
+
+class LocationsGraphTest extends Specification {
+
+    // ctx1 <- ctx2 <- ctx3
+    def graph = new LocationsGraph(
+            [ bean1: [ ref('bean1', 'ctx2') ], bean2: [ ref('bean2', 'ctx3') ] ],
+            [ bean1: ref('bean1', 'ctx1'), bean2: ref('bean2', 'ctx2') ])
+
+
+    def 'add location that depends on existing ones'() {
+        when:
+            def startOrder = graph.addLocation('ctx4', [ ref('bean2', 'ctx4') ], [ ref('bean4', 'ctx4') ])
+        then:
+            startOrder == ['ctx4']
+            graph.getDependencies('ctx4') == ['ctx2'] as Set
+            graph.containsLocation('ctx4')
+        and:
+            def dependents = [] as Set
+            graph.transitiveClosure('ctx1', dependents, false)
+            dependents == ['ctx1', 'ctx2', 'ctx3', 'ctx4'] as Set
+    }
+
+    def 'remove location and return stop order of its dependents'() {
+        when:
+            def stopOrder = graph.removeLocation('ctx2')
+        then:
+            stopOrder == ['ctx3', 'ctx2']
+            !graph.containsLocation('ctx2')
+            graph.getDependencies('ctx3').isEmpty()
+        and:
+            def dependents = [] as Set
+            graph.transitiveClosure('ctx1', dependents, false)
+            dependents == ['ctx1'] as Set
+    }
+
+    def 'satisfy imports of existing locations when removed location is added again'() {
+        setup:
+            graph.removeLocation('ctx2')
+        when:
+            def startOrder = graph.addLocation('ctx2', [ ref('bean1', 'ctx2') ], [ ref('bean2', 'ctx2') ])
+        then:
+            startOrder == ['ctx2', 'ctx3']
+            graph.getDependencies('ctx2') == ['ctx1'] as Set
+            graph.getDependencies('ctx3') == ['ctx2'] as Set
+    }
+
+    def 'refuse double export'() {
+        when:
+            graph.addLocation('ctx4', [], [ ref('bean1', 'ctx4') ])
+        then:
+            thrown(BeanCreationException)
+            !graph.containsLocation('ctx4')
+    }
+
+    def 'refuse unsatisfied import'() {
+        when:
+            graph.addLocation('ctx4', [ ref('missing', 'ctx4') ], [])
+        then:
+            thrown(BeanDefinitionValidationException)
+            !graph.containsLocation('ctx4')
+    }
+
+    def 'refuse incompatible interfaces of the changed edges'() {
+        setup:
+            graph.removeLocation('ctx2')
+        when: 'existing import of MiddleFace is not satisfied by RootFace'
+            graph.addLocation('ctx4', [], [ new BeanReferenceInfo('bean2', RootFace, 'ctx4') ])
+        then:
+            thrown(BeanDefinitionValidationException)
+        when: 'new import of JustBean is not satisfied by MiddleFace'
+            graph.addLocation('ctx5', [ new BeanReferenceInfo('bean1', JustBean, 'ctx5') ], [])
+        then:
+            thrown(BeanDefinitionValidationException)
+    }
+
+    def 'compute closure of multiple locations at once'() {
+        setup:
+            graph.addLocation('ctx4', [ ref('bean1', 'ctx4') ], [])
+        expect:
+            graph.transitiveClosure(['ctx3', 'ctx4', 'unknown'], true) == ['ctx1', 'ctx2', 'ctx3', 'ctx4', 'unknown'] as Set
+            graph.transitiveClosure(['ctx2'], false) == ['ctx2', 'ctx3'] as Set
+    }
+
+    def 'compute closure of a deep chain of locations'() {
+        setup:
+            def depth = 20000
+            def imports = (1..<depth).collectEntries { ["bean$it" as String, [ ref("bean$it", "ctx${it + 1}") ]] }
+            def exports = (1..<depth).collectEntries { ["bean$it" as String, ref("bean$it", "ctx$it")] }
+            def deepGraph = new LocationsGraph(imports, exports)
+        when:
+            def dependents = [] as Set
+            deepGraph.transitiveClosure('ctx1', dependents, false)
+        then:
+            dependents.size() == depth
+        and: 'reachability is reused'
+            deepGraph.transitiveClosure(['ctx2'], false).size() == depth - 1
+    }
+
+
+    def ref(String serviceName, String location) {
+        new BeanReferenceInfo(serviceName, MiddleFace, location)
+    }
+}
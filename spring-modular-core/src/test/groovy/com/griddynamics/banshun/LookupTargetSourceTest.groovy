@@ -66,11 +66,47 @@ class LookupTargetSourceTest extends Specification {
         when: 'invoked again'
             def actual = lookupTargetSource.getTarget()
 
-        then: 'just return already obtained bean'
+        then: 'just return the bean cached by the already obtained target source'
            0 * rootContext._
+           1 * exportTargetSource.getTarget() >> expected
            actual == expected
     }
 
+    def 'find target source in the registry'() {
+        setup:
+            def registry = Mock(ContextParentBean) {
+                findExportTargetSource(serviceName) >> exportTargetSource
+            }
+            def lookupTargetSource = new LookupTargetSource(serviceName, MiddleFace, exportProxyName, rootContext, registry)
+            exportTargetSource.getTargetClass() >> MiddleFace
+            def expected = new JustBean()
+        when:
+            def actual = lookupTargetSource.getTarget()
+        then:
+            0 * rootContext._
+            1 * exportTargetSource.getTarget() >> expected
+        and:
+            actual == expected
+    }
+
+    def 'wait for the service when it is not exported yet'() {
+        setup:
+            def registry = Mock(ContextParentBean) {
+                findExportTargetSource(serviceName) >> null
+            }
+            def lookupTargetSource = new LookupTargetSource(serviceName, MiddleFace, exportProxyName, rootContext, registry)
+            rootContext.containsBean(exportProxyName) >> false
+            exportTargetSource.getTargetClass() >> MiddleFace
+            def expected = new JustBean()
+        when:
+            def actual = lookupTargetSource.getTarget()
+        then:
+            1 * registry.awaitExportTargetSource(serviceName) >> exportTargetSource
+            1 * exportTargetSource.getTarget() >> expected
+        and:
+            actual == expected
+    }
+
     def 'throw exception when root context does not contain target bean'() {
         setup:
             rootContext.containsBean(_) >> false
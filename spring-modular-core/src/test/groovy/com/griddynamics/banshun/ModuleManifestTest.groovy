@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun
+
+import com.griddynamics.banshun.fixtures.MiddleFace
+import com.griddynamics.banshun.fixtures.RootFace
+import org.springframework.core.io.ClassPathResource
+import org.springframework.core.io.FileSystemResource
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+import static com.griddynamics.banshun.test.TestUtils.BASE_PKG
+import static com.griddynamics.banshun.test.TestUtils.BEANS_XML_HEAD
+import static com.griddynamics.banshun.test.TestUtils.BEANS_XML_TAIL
+
+class ModuleManifestTest extends Specification {
+
+    def dir = Files.createTempDirectory('manifest').toFile()
+    def xml = new File(dir, 'ctx2.xml')
+
+
+    def setup() {
+        xml.bytes = new ClassPathResource("${BASE_PKG}/ctx2.xml").inputStream.bytes
+    }
+
+    def cleanup() {
+        dir.deleteDir()
+    }
+
+    def 'generate manifest of the module and read references from it'() {
+        when:
+            def count = ModuleManifest.generate(dir, '*.xml')
+            def entry = ModuleManifest.load(new FileSystemResource(xml), 'ctx2', 'fingerprint')
+        then:
+            count == 1
+            new File(dir, 'ctx2.xml' + ModuleManifest.FILE_SUFFIX).isFile()
+        and:
+            entry.exports == [ new BeanReferenceInfo('context2', MiddleFace, 'ctx2'),
+                               new BeanReferenceInfo('object2', MiddleFace, 'ctx2') ]
+            entry.imports == [ new BeanReferenceInfo('object1', RootFace, 'ctx2') ]
+    }
+
+    def 'ignore manifest of changed module'() {
+        setup:
+            ModuleManifest.generate(dir, '*.xml')
+            xml << '<!-- changed -->'
+        expect:
+            ModuleManifest.load(new FileSystemResource(xml), 'ctx2', 'fingerprint') == null
+    }
+
+    def 'ignore manifest of module with profile specific beans'() {
+        setup:
+            xml.text = xml.text
+                    .replace('spring-beans-3.0.xsd', 'spring-beans-3.2.xsd')
+                    .replaceFirst(/<\/beans>\s*$/, '''
+                        <beans profile="dev, test">
+                            <bean name="object3" class="com.griddynamics.banshun.fixtures.JustBean" lazy-init="true"/>
+                            <bs:export ref="object3" interface="com.griddynamics.banshun.fixtures.MiddleFace"/>
+                        </beans>
+                    </beans>''')
+        when:
+            ModuleManifest.generate(dir, '*.xml')
+        then:
+            new File(dir, 'ctx2.xml' + ModuleManifest.FILE_SUFFIX).text.contains('profiles=dev,test')
+            ModuleManifest.load(new FileSystemResource(xml), 'ctx2', 'fingerprint') == null
+    }
+
+    def 'generate no manifest for module that imports other resources'() {
+        setup:
+            def main = new File(dir, 'main.xml')
+            def mainManifest = new File(dir, 'main.xml' + ModuleManifest.FILE_SUFFIX)
+            main.text = BEANS_XML_HEAD + '<import resource="ctx2.xml"/>' + BEANS_XML_TAIL
+            mainManifest.text = 'outdated'
+        when:
+            def count = ModuleManifest.generate(dir, '*.xml')
+        then: 'only the imported module has a manifest'
+            count == 1
+            !mainManifest.exists()
+            ModuleManifest.load(new FileSystemResource(main), 'main', 'fingerprint') == null
+        when: 'only the imported resource is changed'
+            xml.text = xml.text.replace('name="object2"', 'name="object3"')
+        then: 'the module is still parsed'
+            ModuleManifest.load(new FileSystemResource(main), 'main', 'fingerprint') == null
+    }
+
+    def 'return null when module has no manifest'() {
+        expect:
+            ModuleManifest.load(new FileSystemResource(xml), 'ctx2', 'fingerprint') == null
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun
+
+import spock.lang.Specification
+
+class NameInternerTest extends Specification {
+
+    def interner = new NameInterner()
+
+
+    def 'assign dense IDs in the order of interning'() {
+        when:
+            def ids = ['ctx1', 'ctx2', 'ctx1', 'ctx3'].collect { interner.intern(it) }
+        then:
+            ids == [0, 1, 0, 2]
+            interner.size() == 3
+            interner.nameOf(1) == 'ctx2'
+    }
+
+    def 'return -1 for name that has not been interned'() {
+        setup:
+            interner.intern('ctx1')
+        expect:
+            interner.idOf('ctx1') == 0
+            interner.idOf('ctx2') == -1
+            interner.size() == 1
+    }
+}
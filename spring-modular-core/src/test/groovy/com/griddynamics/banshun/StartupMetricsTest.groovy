@@ -0,0 +1,87 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun
+
+import spock.lang.Specification
+
+import javax.management.ObjectName
+import java.lang.management.ManagementFactory
+
+class StartupMetricsTest extends Specification {
+
+    def metrics = new StartupMetrics()
+
+
+    def 'find the chain of dependent locations with the longest time'() {
+        setup:
+            [a: 10, b: 50, c: 20, d: 30].each { loc, millis ->
+                metrics.location(loc).addRefresh(millis * 1000000)
+            }
+            def dependencies = [a: [], b: [], c: ['a'], d: ['a', 'c']]
+        when:
+            metrics.computeCriticalPath(['a', 'b', 'c', 'd'], dependencies)
+        then:
+            metrics.criticalPath == ['a', 'c', 'd']
+            metrics.criticalPathReport.startsWith('Critical path of 3 child contexts takes 60.0 ms')
+    }
+
+    def 'ignore dependencies that are not initialized'() {
+        setup:
+            metrics.location('b').addRefresh(1000)
+        when:
+            metrics.computeCriticalPath(['a', 'b'], [b: ['a']])
+        then:
+            metrics.criticalPath == ['b']
+    }
+
+    def 'list locations in the report from the slowest'() {
+        setup:
+            metrics.location('fast').addRefresh(1000000)
+            metrics.location('slow').with {
+                addResolve(1000000)
+                addParse(2000000)
+                addRefresh(5000000)
+            }
+        when:
+            def lines = metrics.startupReport.readLines()
+        then:
+            lines.size() == 4
+            lines[1] ==~ /\s+resolve\s+refresh\s+parse\s+singletons\s+total\s+location/
+            lines[2] ==~ /\s+1\.0\s+5\.0\s+2\.0\s+-\s+6\.0\s+slow/
+            lines[3] ==~ /\s+0\.0\s+1\.0\s+-\s+-\s+1\.0\s+fast/
+    }
+
+    def 'record startup of child contexts and expose it as MBean'() {
+        setup:
+            def objectName = 'com.griddynamics.banshun:type=StartupMetrics,name=test'
+            def ctx0 = XmlBasedConfigIT.initParentContext(StrictContextParentBean, 'ctx2', 'ctx1', 'ctx3',
+                                                          startupMetricsObjectName: objectName)
+            def metrics = ctx0.getBean('root', ContextParentBean).startupMetrics
+            def mbeanServer = ManagementFactory.platformMBeanServer
+        expect:
+            metrics.locationsCount == 3
+            metrics.criticalPath.size() == 3
+            metrics.criticalPath[0].endsWith('ctx1.xml')
+            metrics.getLocationTimings(metrics.criticalPath[0]).parseNanos >= 0
+            metrics.getLocationTimings(metrics.criticalPath[0]).refreshNanos > 0
+        and:
+            mbeanServer.getAttribute(new ObjectName(objectName), 'LocationsCount') == 3
+        when:
+            ctx0.close()
+        then:
+            !mbeanServer.isRegistered(new ObjectName(objectName))
+    }
+}
@@ -15,6 +15,20 @@
  */
 package com.griddynamics.banshun
 
+import com.griddynamics.banshun.fixtures.Child
+import com.griddynamics.banshun.fixtures.Parent
+import com.griddynamics.banshun.test.InMemoryXmlApplicationContext
+import org.springframework.beans.factory.BeanCreationException
+import org.springframework.context.support.GenericApplicationContext
+import spock.lang.Unroll
+
+import java.nio.file.Files
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+import static com.griddynamics.banshun.test.TestUtils.BEANS_XML_HEAD
+import static com.griddynamics.banshun.test.TestUtils.BEANS_XML_TAIL
+
 class StrictContextParentBeanTest extends ContextParentBeanTest {
 
     def 'skip failed contexts'() {
@@ -29,6 +43,172 @@ class StrictContextParentBeanTest extends ContextParentBeanTest {
             parentBean.children.size() == 2
     }
 
+    def 'hand over bean definitions parsed during analysis to child contexts'() {
+        setup:
+            def ctx0 = XmlBasedConfigIT.initParentContext(StrictContextParentBean, 'ctx2', 'ctx1', 'ctx3')
+            def parentBean = ctx0.getBean('root', StrictContextParentBean)
+        expect:
+            parentBean.children.size() == 3
+            parentBean.children[0].containsBean('beanA1')
+            parentBean.parsedDefinitions.isEmpty()
+    }
+
+    def 'initialize lazy location when its service is used'() {
+        setup:
+            def ctx0 = XmlBasedConfigIT.initParentContext(StrictContextParentBean, 'ctx1', 'ctx2', 'ctx3',
+                    lazyConfigLocations: '/com/griddynamics/banshun/it/ctx2.xml')
+            def parentBean = ctx0.getBean('root', StrictContextParentBean)
+        expect: 'lazy context is skipped on startup'
+            parentBean.children.size() == 2
+            def ctx3 = parentBean.children[1]
+        when:
+            ctx3.getBean('useExportB1', Parent).child.toString()
+        then: 'it is initialized on the first use of its service'
+            parentBean.children.size() == 3
+            parentBean.children[2].containsBean('exportB1')
+        when:
+            ctx3.getBean('useExportB1', Parent).child.toString()
+        then:
+            parentBean.children.size() == 3
+    }
+
+    def 'initialize lazy location only once when its service is used concurrently'() {
+        setup:
+            def ctx0 = XmlBasedConfigIT.initParentContext(StrictContextParentBean, 'ctx1', 'ctx2', 'ctx3',
+                    lazyConfigLocations: '/com/griddynamics/banshun/it/ctx2.xml')
+            def parentBean = ctx0.getBean('root', StrictContextParentBean)
+            def ctx3 = parentBean.children[1]
+            def executor = Executors.newFixedThreadPool(8)
+        when:
+            def results = (1..20).collect {
+                executor.submit({ ctx3.getBean('useExportB1', Parent).child.toString() } as Callable)
+            }*.get()
+        then:
+            results.unique().size() == 1
+            parentBean.children.size() == 3
+        cleanup:
+            executor.shutdown()
+    }
+
+    def 'reload location and rebind its exports'() {
+        setup:
+            def ctx0 = XmlBasedConfigIT.initParentContext(StrictContextParentBean, 'ctx1', 'ctx2', 'ctx3')
+            def parentBean = ctx0.getBean('root', StrictContextParentBean)
+            def (ctx1, ctx2, ctx3) = parentBean.children
+            def importedB1 = ctx3.getBean('exportB1', Child)
+            def oldB1 = importedB1.toString()
+        when:
+            parentBean.reload(parentBean.resultConfigLocations[1])
+        then: 'the location is reloaded'
+            !ctx2.active
+            parentBean.children.size() == 3
+            !parentBean.children[1].is(ctx2)
+        and: 'dependent location is not reloaded, because exports did not change'
+            parentBean.children[2].is(ctx3)
+        and: 'existing import proxy uses the new bean'
+            importedB1.toString() != oldB1
+            importedB1.toString() == parentBean.children[1].getBean('exportB1').toString()
+    }
+
+    def 'refuse to reload location when import proxies have static targets'() {
+        setup:
+            def parentBean = new StrictContextParentBean(staticImportTargets: true)
+        when:
+            parentBean.reload('ctx1.xml')
+        then:
+            thrown(IllegalStateException)
+    }
+
+    def 'reload dependent locations when exports change'() {
+        setup:
+            def dir = Files.createTempDirectory('reload').toFile()
+            def exporter = new File(dir, 'exporter.xml')
+            def importer = new File(dir, 'importer.xml')
+            exporter.text = BEANS_XML_HEAD + """
+                <bean id="bean1" class="com.griddynamics.banshun.fixtures.ChildImpl" />
+                <bs:export name="service1" ref="bean1" interface="${Child.name}" />
+                """ + BEANS_XML_TAIL
+            importer.text = BEANS_XML_HEAD + """
+                <bs:import id="service1" interface="${Child.name}" />
+                """ + BEANS_XML_TAIL
+
+            def ctx0 = new InMemoryXmlApplicationContext("""
+                <bean id="root" class="${StrictContextParentBean.name}">
+                    <property name="configLocations" value="${exporter.toURI()},${importer.toURI()}" />
+                </bean>
+                """)
+            def parentBean = ctx0.getBean('root', StrictContextParentBean)
+            def importerCtx = parentBean.children[1]
+        when:
+            exporter.text = exporter.text.replace('</beans>',
+                    """<bs:export name="service2" ref="bean1" interface="${Child.name}" /></beans>""")
+            parentBean.reload(exporter.toURI().toString())
+        then:
+            !importerCtx.active
+            parentBean.children.size() == 2
+            parentBean.children[0].containsBean('service2-export-ref')
+            parentBean.children[1].getBean('service1', Child).name == 'bean1'
+        cleanup:
+            ctx0?.close()
+            dir.deleteDir()
+    }
+
+    @Unroll
+    def 'report the same errors when analyzed with parallelism #parallelism'() {
+        setup:
+            def dir = Files.createTempDirectory('analysis').toFile()
+            def locations = ['first', 'second', 'third'].collect { new File(dir, "${it}.xml") }
+            locations[0].text = BEANS_XML_HEAD + """
+                <bean id="bean1" class="com.griddynamics.banshun.fixtures.ChildImpl" />
+                <bs:export name="service1" ref="bean1" interface="${Child.name}" />
+                """ + BEANS_XML_TAIL
+            locations[1].text = BEANS_XML_HEAD + """
+                <bean id="bean2" class="com.griddynamics.banshun.fixtures.ChildImpl" />
+                <bs:export name="service1" ref="bean2" interface="${Child.name}" />
+                """ + BEANS_XML_TAIL
+            locations[2].text = BEANS_XML_HEAD + """
+                <bean id="bean3" class="com.example.Missing" />
+                """ + BEANS_XML_TAIL
+
+            def parentBean = new StrictContextParentBean(
+                    applicationContext: new GenericApplicationContext(),
+                    configLocations: locations*.toURI()*.toString() as String[],
+                    analysisParallelism: parallelism)
+        when:
+            parentBean.afterPropertiesSet()
+        then:
+            def ex = thrown(BeanCreationException)
+            ex.message.contains("in context ${locations[1].toURI()}")
+            ex.message.contains("Previous export was in context ${locations[0].toURI()}")
+        cleanup:
+            dir.deleteDir()
+        where:
+            parallelism << [1, 4]
+    }
+
+    def 'read references from module manifest instead of parsing the location'() {
+        setup:
+            def dir = Files.createTempDirectory('manifest').toFile()
+            def location = new File(dir, 'module.xml')
+            location.text = BEANS_XML_HEAD + """
+                <bean id="bean1" class="com.example.Missing" />
+                <bs:export name="service1" ref="bean1" interface="${Child.name}" />
+                """ + BEANS_XML_TAIL
+
+            def parentBean = new StrictContextParentBean(
+                    applicationContext: new GenericApplicationContext(),
+                    configLocations: [ location.toURI().toString() ] as String[],
+                    useModuleManifests: true)
+        when: 'missing class would be reported when the location is parsed'
+            ModuleManifest.generate(dir, '*.xml')
+            parentBean.afterPropertiesSet()
+        then:
+            notThrown(Exception)
+            parentBean.resultConfigLocations == [ location.toURI().toString() ]
+        cleanup:
+            dir.deleteDir()
+    }
+
     def 'analyze dependencies'() {
 
     }
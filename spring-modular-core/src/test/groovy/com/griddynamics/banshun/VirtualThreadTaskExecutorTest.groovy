@@ -0,0 +1,67 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.RejectedExecutionException
+
+import static java.util.concurrent.TimeUnit.SECONDS
+
+class VirtualThreadTaskExecutorTest extends Specification {
+
+    def executor = new VirtualThreadTaskExecutor()
+
+
+    def cleanup() {
+        executor.destroy()
+    }
+
+    def 'detect support of virtual threads'() {
+        setup:
+            def version = System.getProperty('java.specification.version')
+        expect:
+            VirtualThreadTaskExecutor.supported == (!version.startsWith('1.') && version.toInteger() >= 24)
+    }
+
+    def 'run blocked tasks concurrently'() {
+        setup:
+            def tasksCount = 50
+            def started = new CountDownLatch(tasksCount)
+            def finished = new CountDownLatch(tasksCount)
+        when: 'each task waits until all of them are started'
+            tasksCount.times {
+                executor.execute {
+                    started.countDown()
+                    if (started.await(5, SECONDS)) {
+                        finished.countDown()
+                    }
+                }
+            }
+        then:
+            finished.await(5, SECONDS)
+    }
+
+    def 'refuse tasks when destroyed'() {
+        setup:
+            executor.destroy()
+        when:
+            executor.execute { }
+        then:
+            thrown(RejectedExecutionException)
+    }
+}
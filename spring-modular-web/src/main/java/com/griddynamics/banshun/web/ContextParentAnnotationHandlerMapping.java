@@ -17,16 +17,22 @@
 package com.griddynamics.banshun.web;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.springframework.beans.BeansException;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.util.Assert;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
@@ -41,7 +47,110 @@ import org.springframework.web.servlet.mvc.annotation.DefaultAnnotationHandlerMa
  */
 public class ContextParentAnnotationHandlerMapping extends DefaultAnnotationHandlerMapping implements HandlersRegistry {
 
-    private final Map<Class<?>, RequestMapping> cachedMappings = new HashMap<Class<?>, RequestMapping>();
+    private static final Object NO_MAPPING = new Object();
+
+    /**
+     * Type-level {@link RequestMapping} of the handler classes, or {@link #NO_MAPPING} if the class
+     * has none. It's filled when handlers are registered, so validation of a request doesn't have
+     * to look up annotations.
+     */
+    private final ConcurrentMap<Class<?>, Object> cachedMappings = new ConcurrentHashMap<Class<?>, Object>();
+
+    private final HandlerPatternIndex patternIndex = new HandlerPatternIndex();
+    private boolean usePatternIndex = true;
+
+    /**
+     * Specifies whether the registered URLs should be indexed by their path segments, so the
+     * lookup of a handler by pattern doesn't have to match all the registered URLs, but only
+     * those that share leading segments with the request path. The index is used only with
+     * the default {@link AntPathMatcher}.
+     *
+     * @default true
+     */
+    public void setUsePatternIndex(boolean usePatternIndex) {
+        this.usePatternIndex = usePatternIndex;
+    }
+
+    @Override
+    protected void registerHandler(String urlPath, Object handler) throws BeansException, IllegalStateException {
+        super.registerHandler(urlPath, handler);
+
+        Object registered = getHandlerMap().get(urlPath);
+        if (registered != null) {
+            patternIndex.add(urlPath);
+
+            // lazy handlers are registered by bean name
+            if (!(registered instanceof String)) {
+                findTypeLevelMapping(registered.getClass());
+            }
+        }
+    }
+
+    /**
+     * Same as {@link org.springframework.web.servlet.handler.AbstractUrlHandlerMapping#lookupHandler(String,
+     * HttpServletRequest) AbstractUrlHandlerMapping#lookupHandler()}, but matches only the candidate
+     * patterns found in the {@link HandlerPatternIndex}.
+     */
+    @Override
+    protected Object lookupHandler(String urlPath, HttpServletRequest request) throws Exception {
+        if (!usePatternIndex || getPathMatcher().getClass() != AntPathMatcher.class) {
+            return super.lookupHandler(urlPath, request);
+        }
+        Map<String, Object> handlerMap = getHandlerMap();
+
+        // Direct match?
+        Object handler = handlerMap.get(urlPath);
+        if (handler != null) {
+            handler = resolveHandler(handler);
+            validateHandler(handler, request);
+            return buildPathExposingHandler(handler, urlPath, urlPath, null);
+        }
+
+        // Pattern match?
+        List<String> matchingPatterns = new ArrayList<String>();
+        for (String registeredPattern : patternIndex.getCandidates(urlPath)) {
+            if (getPathMatcher().match(registeredPattern, urlPath)) {
+                matchingPatterns.add(registeredPattern);
+            }
+        }
+        if (matchingPatterns.isEmpty()) {
+            return null;
+        }
+        Comparator<String> patternComparator = getPathMatcher().getPatternComparator(urlPath);
+        Collections.sort(matchingPatterns, patternComparator);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Matching patterns for request [" + urlPath + "] are " + matchingPatterns);
+        }
+        String bestPatternMatch = matchingPatterns.get(0);
+
+        handler = resolveHandler(handlerMap.get(bestPatternMatch));
+        validateHandler(handler, request);
+        String pathWithinMapping = getPathMatcher().extractPathWithinPattern(bestPatternMatch, urlPath);
+
+        // There might be multiple 'best patterns', let's make sure we have the correct URI template variables
+        // for all of them
+        Map<String, String> uriTemplateVariables = new LinkedHashMap<String, String>();
+        for (String matchingPattern : matchingPatterns) {
+            if (patternComparator.compare(bestPatternMatch, matchingPattern) == 0) {
+                Map<String, String> vars = getPathMatcher().extractUriTemplateVariables(matchingPattern, urlPath);
+                uriTemplateVariables.putAll(getUrlPathHelper().decodePathVariables(request, vars));
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("URI Template variables for request [" + urlPath + "] are " + uriTemplateVariables);
+        }
+        return buildPathExposingHandler(handler, bestPatternMatch, pathWithinMapping, uriTemplateVariables);
+    }
+
+    /**
+     * Bean name or resolved handler?
+     */
+    private Object resolveHandler(Object handler) {
+        if (handler instanceof String) {
+            return getApplicationContext().getBean((String) handler);
+        }
+        return handler;
+    }
 
     /**
      * @see org.springframework.web.servlet.handler.BeanNameUrlHandlerMapping.determineUrlsForHandler(String)
@@ -114,12 +223,25 @@ public class ContextParentAnnotationHandlerMapping extends DefaultAnnotationHand
     }
 
     protected void validateHandler(Object handler, HttpServletRequest request) throws Exception {
-        RequestMapping mapping = this.cachedMappings.get(handler.getClass());
-        if (mapping == null) {
-            mapping = AnnotationUtils.findAnnotation(handler.getClass(), RequestMapping.class);
-        }
+        RequestMapping mapping = findTypeLevelMapping(handler.getClass());
         if (mapping != null) {
             validateMapping(mapping, request);
         }
     }
+
+    /**
+     * @return The type-level mapping of the handler class, or <tt>null</tt> if it has none. The
+     *         annotation is looked up only once per class.
+     */
+    private RequestMapping findTypeLevelMapping(Class<?> handlerType) {
+        Object mapping = this.cachedMappings.get(handlerType);
+        if (mapping == null) {
+            mapping = AnnotationUtils.findAnnotation(handlerType, RequestMapping.class);
+            if (mapping == null) {
+                mapping = NO_MAPPING;
+            }
+            this.cachedMappings.putIfAbsent(handlerType, mapping);
+        }
+        return mapping != NO_MAPPING ? (RequestMapping) mapping : null;
+    }
 }
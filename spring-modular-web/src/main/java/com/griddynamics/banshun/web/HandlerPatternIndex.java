@@ -0,0 +1,111 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun.web;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Trie of the registered URL patterns keyed by their path segments. Each pattern is stored under
+ * its leading literal segments, i.e. the segments before the first one with a wildcard
+ * (<tt>*</tt>, <tt>?</tt>) or an URI template variable. A pattern can match only the paths that
+ * start with the same segments, so only the patterns found along the path of the request have
+ * to be matched, regardless of how many patterns are registered.
+ *
+ * <p>The paths are split into segments the same way as {@link org.springframework.util.AntPathMatcher}
+ * with the default <tt>/</tt> separator does. Registration is thread-safe and doesn't block
+ * concurrent lookups.</p>
+ */
+class HandlerPatternIndex {
+
+    private static final String SEPARATOR = "/";
+
+    private final Node root = new Node();
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<String, Integer>();
+    private final AtomicInteger counter = new AtomicInteger();
+
+    private final Comparator<String> registrationOrder = new Comparator<String>() {
+        public int compare(String o1, String o2) {
+            return ordinals.get(o1).compareTo(ordinals.get(o2));
+        }
+    };
+
+
+    /**
+     * Adds the pattern into the index, unless it's already there.
+     */
+    synchronized void add(String pattern) {
+        if (ordinals.containsKey(pattern)) {
+            return;
+        }
+        Node node = root;
+        for (String segment : StringUtils.tokenizeToStringArray(pattern, SEPARATOR)) {
+            if (isWildcard(segment)) {
+                break;
+            }
+            Node child = node.children.get(segment);
+            if (child == null) {
+                child = new Node();
+                node.children.put(segment, child);
+            }
+            node = child;
+        }
+        ordinals.put(pattern, counter.getAndIncrement());
+        node.patterns.add(pattern);
+    }
+
+    /**
+     * @param urlPath The path of the request.
+     * @return The patterns that may match the path, in the order of registration.
+     */
+    List<String> getCandidates(String urlPath) {
+        List<String> result = new ArrayList<String>(root.patterns);
+        Node node = root;
+
+        for (String segment : StringUtils.tokenizeToStringArray(urlPath, SEPARATOR)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                break;
+            }
+            result.addAll(node.patterns);
+        }
+        Collections.sort(result, registrationOrder);
+        return result;
+    }
+
+    int size() {
+        return ordinals.size();
+    }
+
+
+    private boolean isWildcard(String segment) {
+        return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0 || segment.indexOf('{') >= 0;
+    }
+
+
+    private static class Node {
+        final Map<String, Node> children = new ConcurrentHashMap<String, Node>();
+        final List<String> patterns = new CopyOnWriteArrayList<String>();
+    }
+}
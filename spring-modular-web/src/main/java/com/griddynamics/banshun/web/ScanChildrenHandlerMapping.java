@@ -17,8 +17,11 @@
 package com.griddynamics.banshun.web;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.griddynamics.banshun.ContextParentBean;
 import com.griddynamics.banshun.Registry;
@@ -30,6 +33,8 @@ import org.springframework.beans.factory.BeanInitializationException;
 import org.springframework.context.*;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.core.OrderComparator;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.handler.AbstractUrlHandlerMapping;
 
@@ -40,6 +45,7 @@ public class ScanChildrenHandlerMapping extends ContextParentAnnotationHandlerMa
     	org.springframework.web.servlet.handler.BeanNameUrlHandlerMapping.class,
     	org.springframework.web.servlet.mvc.annotation.DefaultAnnotationHandlerMapping.class};
     private Registry parentBean = null;
+    private int scanParallelism = Runtime.getRuntime().availableProcessors();
 
     public void setParentBean(Registry parentBean) {
         this.parentBean = parentBean;
@@ -51,14 +57,53 @@ public class ScanChildrenHandlerMapping extends ContextParentAnnotationHandlerMa
         }
     }
 
+    /**
+     * Specifies number of threads used to collect handler mappings from the child contexts. The
+     * collected handlers are registered in one batch in the order of the children, so all the
+     * conflicting URLs are reported together and always in the same order.
+     *
+     * @default number of available processors; 1 means that children are scanned in the thread
+     *          that has refreshed the root context.
+     */
+    public void setScanParallelism(int scanParallelism) {
+        Assert.isTrue(scanParallelism > 0, "scanParallelism must be positive");
+        this.scanParallelism = scanParallelism;
+    }
+
     public void scanChildContexts() {
-        List<ConfigurableApplicationContext> children = ((ContextParentBean) parentBean).getChildren();
+        List<ConfigurableApplicationContext> children =
+                new ArrayList<ConfigurableApplicationContext>(((ContextParentBean) parentBean).getChildren());
+        List<HandlersCollector> collectors = new ArrayList<HandlersCollector>(children.size());
         for (ConfigurableApplicationContext child : children) {
-            createHandlerMappingsAndRegisterHandlers(child);
+            collectors.add(new HandlersCollector(child));
+        }
+        collectHandlers(collectors);
+
+        List<String> conflicts = new ArrayList<String>();
+        for (HandlersCollector collector : collectors) {
+            for (Map<String, Object> handlerMap : collector.getHandlerMaps()) {
+                for (Map.Entry<String, Object> entry : handlerMap.entrySet()) {
+                    try {
+                        registerHandler(entry.getKey(), entry.getValue());
+                    } catch (IllegalStateException ex) {
+                        conflicts.add(collector.context.getDisplayName() + ": " + ex.getMessage());
+                    }
+                }
+            }
+        }
+        if (!conflicts.isEmpty()) {
+            throw new IllegalStateException("Conflicting handler mappings found in child contexts:\n"
+                    + StringUtils.collectionToDelimitedString(conflicts, "\n"));
         }
     }
 
     public void createHandlerMappingsAndRegisterHandlers(ApplicationContext child) {
+        for (HandlerMapping mapping : findHandlerMappings(child)) {
+            registerHandlers(((AbstractUrlHandlerMapping) mapping).getHandlerMap());
+        }
+    }
+
+    private List<HandlerMapping> findHandlerMappings(ApplicationContext child) {
         Map<String, HandlerMapping> matchingBeans =
                 BeanFactoryUtils.beansOfTypeIncludingAncestors(child, HandlerMapping.class, true, false);
 
@@ -71,17 +116,32 @@ public class ScanChildrenHandlerMapping extends ContextParentAnnotationHandlerMa
                 logger.debug("No HandlerMappings found in context '" + child.getDisplayName() + "': using default");
             }
         }
-        registerHandlers(handlerMappings);
+        return handlerMappings;
     }
 
-    private void registerHandlers(List<HandlerMapping> handlerMappings) {
-        for (HandlerMapping mapping : handlerMappings) {
-            AbstractUrlHandlerMapping abstractUrlHandlerMapping = (AbstractUrlHandlerMapping) mapping;
-            Map<String, Object> handlerMap = abstractUrlHandlerMapping.getHandlerMap();
-            for (String url : handlerMap.keySet()) {
-                Object handler = handlerMap.get(url);
-                registerHandler(url, handler);
+    private void collectHandlers(final List<HandlersCollector> collectors) {
+        if (scanParallelism > 1 && collectors.size() > 1) {
+            ForkJoinPool pool = new ForkJoinPool(Math.min(scanParallelism, collectors.size()));
+            try {
+                pool.invoke(new RecursiveAction() {
+                    protected void compute() {
+                        invokeAll(collectors);
+                    }
+                });
+            } finally {
+                pool.shutdown();
             }
+        } else {
+            for (HandlersCollector collector : collectors) {
+                collector.compute();
+            }
+        }
+    }
+
+    private void registerHandlers(Map<String, Object> handlerMap) {
+        for (String url : handlerMap.keySet()) {
+            Object handler = handlerMap.get(url);
+            registerHandler(url, handler);
         }
     }
 
@@ -99,4 +159,38 @@ public class ScanChildrenHandlerMapping extends ContextParentAnnotationHandlerMa
 
         return handlerMappings;
     }
+
+
+    /**
+     * Collects copies of the handler maps of a single child context, so the children can be
+     * scanned concurrently.
+     */
+    private class HandlersCollector extends RecursiveAction {
+
+        final ApplicationContext context;
+        private final List<Map<String, Object>> handlerMaps = new ArrayList<Map<String, Object>>();
+        private RuntimeException failure;
+
+        HandlersCollector(ApplicationContext context) {
+            this.context = context;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                for (HandlerMapping mapping : findHandlerMappings(context)) {
+                    handlerMaps.add(new LinkedHashMap<String, Object>(((AbstractUrlHandlerMapping) mapping).getHandlerMap()));
+                }
+            } catch (RuntimeException ex) {
+                failure = ex;
+            }
+        }
+
+        List<Map<String, Object>> getHandlerMaps() {
+            if (failure != null) {
+                throw failure;
+            }
+            return handlerMaps;
+        }
+    }
 }
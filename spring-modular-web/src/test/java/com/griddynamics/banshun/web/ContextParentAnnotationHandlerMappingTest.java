@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun.web;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.springframework.web.HttpRequestMethodNotSupportedException;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+public class ContextParentAnnotationHandlerMappingTest {
+    private ContextParentAnnotationHandlerMapping handlerMapping = new ContextParentAnnotationHandlerMapping();
+
+    @Test
+    public void validateRequestAgainstTypeLevelMapping() throws Exception {
+        handlerMapping.registerByName("/post-only.html", new PostOnlyHandler());
+
+        handlerMapping.validateHandler(new PostOnlyHandler(), request("POST"));
+        try {
+            handlerMapping.validateHandler(new PostOnlyHandler(), request("GET"));
+            fail("Expected HttpRequestMethodNotSupportedException");
+        } catch (HttpRequestMethodNotSupportedException ex) {
+            assertEquals("GET", ex.getMethod());
+        }
+    }
+
+    @Test
+    public void acceptAnyRequestForHandlerWithoutTypeLevelMapping() throws Exception {
+        handlerMapping.registerByName("/plain.html", new Object());
+
+        handlerMapping.validateHandler(new Object(), request("GET"));
+        handlerMapping.validateHandler(new Object(), request("DELETE"));
+    }
+
+    @Test
+    public void lookupSameHandlerWithAndWithoutPatternIndex() throws Exception {
+        String[] patterns = {
+                "/module-1/resource.html", "/module-1/items/*/detail.html", "/module-1/{id}/detail.html",
+                "/module-1/{id}/edit.html", "/module-2/{group}/{id}.html", "/**/*.css", "/**" };
+        String[] paths = {
+                "/module-1/resource.html", "/module-1/items/42/detail.html", "/module-1/42/detail.html",
+                "/module-1/42/edit.html", "/module-2/a/b.html", "/module-1/css/style.css", "/module-3/missing.html",
+                "/module-1/resource.html/extra", "/" };
+
+        ContextParentAnnotationHandlerMapping plain = new ContextParentAnnotationHandlerMapping();
+        plain.setUsePatternIndex(false);
+        for (String pattern : patterns) {
+            Object handler = new Object();
+            handlerMapping.registerByName(pattern, handler);
+            plain.registerByName(pattern, handler);
+        }
+        for (String path : paths) {
+            Map<String, Object> indexedAttributes = new HashMap<String, Object>();
+            Map<String, Object> plainAttributes = new HashMap<String, Object>();
+
+            Object indexed = lookup(handlerMapping, path, indexedAttributes);
+            Object expected = lookup(plain, path, plainAttributes);
+
+            assertSame("handler for " + path, expected, indexed);
+            assertEquals("exposed attributes for " + path, plainAttributes, indexedAttributes);
+        }
+    }
+
+    /**
+     * Looks up the handler and exposes the best matching pattern and the URI template variables
+     * into the given attributes, like the handler interceptors do for a real request.
+     */
+    private Object lookup(ContextParentAnnotationHandlerMapping mapping, String path,
+                          Map<String, Object> attributes) throws Exception {
+        HandlerExecutionChain chain = (HandlerExecutionChain) mapping.lookupHandler(path, request("GET", attributes));
+        if (chain == null) {
+            return null;
+        }
+        for (HandlerInterceptor interceptor : chain.getInterceptors()) {
+            interceptor.preHandle(request("GET", attributes), null, chain.getHandler());
+        }
+        return chain.getHandler();
+    }
+
+    private HttpServletRequest request(String method) {
+        return request(method, new HashMap<String, Object>());
+    }
+
+    private HttpServletRequest request(final String method, final Map<String, Object> attributes) {
+        return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ HttpServletRequest.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method m, Object[] args) {
+                        if (m.getName().equals("setAttribute")) {
+                            attributes.put((String) args[0], args[1]);
+                        } else if (m.getName().equals("getAttribute")) {
+                            return attributes.get(args[0]);
+                        }
+                        return m.getName().equals("getMethod") ? method : null;
+                    }
+                });
+    }
+
+    @RequestMapping(method = RequestMethod.POST)
+    public static class PostOnlyHandler {
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun.web;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class HandlerPatternIndexTest {
+    private HandlerPatternIndex index;
+
+    @Before
+    public void init() {
+        index = new HandlerPatternIndex();
+        index.add("/**/*.css");
+        index.add("/module-1/items/*/detail.html");
+        index.add("/module-1/resource.html");
+        index.add("/module-1/{id}/edit.html");
+        index.add("/module-2/items/*/detail.html");
+        index.add("/module-1/resource.html");
+    }
+
+    @Test
+    public void candidatesShareLeadingSegmentsWithPath() {
+        assertEquals(Arrays.asList("/**/*.css", "/module-1/items/*/detail.html", "/module-1/{id}/edit.html"),
+                index.getCandidates("/module-1/items/42/detail.html"));
+
+        assertEquals(Arrays.asList("/**/*.css", "/module-2/items/*/detail.html"),
+                index.getCandidates("/module-2/items/1/detail.html"));
+    }
+
+    @Test
+    public void patternsStartingWithWildcardAreAlwaysCandidates() {
+        assertEquals(Arrays.asList("/**/*.css"), index.getCandidates("/css/style.css"));
+        assertEquals(Arrays.asList("/**/*.css"), index.getCandidates("/"));
+    }
+
+    @Test
+    public void duplicatePatternIsAddedOnce() {
+        assertEquals(5, index.size());
+    }
+}
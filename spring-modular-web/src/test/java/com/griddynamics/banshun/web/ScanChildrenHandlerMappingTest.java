@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.banshun.web;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.griddynamics.banshun.ContextParentBean;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
+
+public class ScanChildrenHandlerMappingTest {
+
+    @Test
+    public void registerHandlersOfAllChildren() {
+        ScanChildrenHandlerMapping handlerMapping = createHandlerMapping("/a.html", "/b.html", "/c.html");
+        handlerMapping.scanChildContexts();
+
+        assertEquals(3, handlerMapping.getHandlerMap().size());
+        assertEquals("child-2", handlerMapping.getHandlerMap().get("/b.html").toString());
+    }
+
+    @Test
+    public void reportConflictsInOrderOfChildren() {
+        ScanChildrenHandlerMapping handlerMapping = createHandlerMapping("/a.html", "/a.html", "/b.html", "/a.html");
+        try {
+            handlerMapping.scanChildContexts();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException ex) {
+            String message = ex.getMessage();
+            assertTrue(message.contains("child-2"));
+            assertTrue(message.indexOf("child-2") < message.indexOf("child-4"));
+        }
+        assertEquals("child-3", handlerMapping.getHandlerMap().get("/b.html").toString());
+    }
+
+    private ScanChildrenHandlerMapping createHandlerMapping(String... urls) {
+        final List<ConfigurableApplicationContext> children = new ArrayList<ConfigurableApplicationContext>();
+        for (int i = 0; i < urls.length; i++) {
+            GenericApplicationContext child = new GenericApplicationContext();
+            child.setDisplayName("child-" + (i + 1));
+            child.registerBeanDefinition("handlerMapping", BeanDefinitionBuilder
+                    .genericBeanDefinition(SimpleUrlHandlerMapping.class)
+                    .addPropertyValue("urlMap", Collections.singletonMap(urls[i], new StringBuilder("child-" + (i + 1))))
+                    .getBeanDefinition());
+            child.refresh();
+            children.add(child);
+        }
+        ScanChildrenHandlerMapping handlerMapping = new ScanChildrenHandlerMapping();
+        handlerMapping.setScanParallelism(4);
+        handlerMapping.setParentBean(new ContextParentBean() {
+            @Override
+            public List<ConfigurableApplicationContext> getChildren() {
+                return children;
+            }
+        });
+        return handlerMapping;
+    }
+}